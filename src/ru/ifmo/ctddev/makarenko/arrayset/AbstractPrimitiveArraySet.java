@@ -0,0 +1,199 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import java.util.*;
+
+/**
+ * Base of unmodifiable sorted sets of boxed primitives backed by a sorted array without duplicates.
+ * <p>
+ * A set is the range {@code [from, to)} of its array, so range views share the array of the set
+ * they are taken from. Elements are ordered naturally, the same way as by {@link Arrays#sort}.
+ *
+ * @param <T> the boxed type of elements
+ */
+abstract class AbstractPrimitiveArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+
+    protected final int from;
+    protected final int to;
+    private NavigableSet<T> descending = null;
+
+    protected AbstractPrimitiveArraySet(int from, int to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return boxed element at the given index of the array
+     */
+    protected abstract T get(int index);
+
+    /**
+     * Searches the element in {@code [from, to)} the same way as {@link Arrays#binarySearch}.
+     */
+    protected abstract int search(T element);
+
+    /**
+     * @return set backed by the range {@code [from, to)} of the same array
+     */
+    protected abstract AbstractPrimitiveArraySet<T> view(int from, int to);
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return get(from);
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return get(to - 1);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return null;
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new ArraySpliterator<>(this::get, from, to, null, false);
+    }
+
+    Spliterator<T> descendingSpliterator() {
+        return new ArraySpliterator<>(this::get, from, to, null, true);
+    }
+
+    @Override
+    public T lower(T e) {
+        int index = lessThan(e, false);
+        return index < from ? null : get(index);
+    }
+
+    @Override
+    public T floor(T e) {
+        int index = lessThan(e, true);
+        return index < from ? null : get(index);
+    }
+
+    @Override
+    public T ceiling(T e) {
+        int index = greaterThan(e, true);
+        return index < to ? get(index) : null;
+    }
+
+    @Override
+    public T higher(T e) {
+        int index = greaterThan(e, false);
+        return index < to ? get(index) : null;
+    }
+
+    @Override
+    public T pollFirst() {
+        throw new UnsupportedOperationException("ArraySet is immutable");
+    }
+
+    @Override
+    public T pollLast() {
+        throw new UnsupportedOperationException("ArraySet is immutable");
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        if (descending == null) {
+            descending = new DescendingSet<>(this);
+        }
+        return descending;
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new Iterator<T>() {
+            private int index = to;
+
+            @Override
+            public boolean hasNext() {
+                return index > from;
+            }
+
+            @Override
+            public T next() {
+                if (index == from) {
+                    throw new NoSuchElementException();
+                }
+                return get(--index);
+            }
+        };
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        int l = greaterThan(fromElement, fromInclusive);
+        int r = lessThan(toElement, toInclusive) + 1;
+        return view(l, r < l ? l : r);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return view(from, lessThan(toElement, inclusive) + 1);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return view(greaterThan(fromElement, inclusive), to);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * @return The index of the least element in this set
+     *         greater than (or equal) to the given element
+     */
+    private int greaterThan(T element, boolean orEqual) {
+        return greaterThan(search(element), orEqual);
+    }
+
+    /**
+     * @return The index of the greatest element in this set
+     *         less than (or equal) to the given element
+     */
+    private int lessThan(T element, boolean orEqual) {
+        return lessThan(search(element), orEqual);
+    }
+
+    /**
+     * Converts a search result in the range to the index of the greatest element
+     * less than (or equal) to the key, {@code from - 1} if there is none.
+     */
+    protected static int lessThan(int index, boolean orEqual) {
+        return index < 0 ? ~index - 1 : orEqual ? index : index - 1;
+    }
+
+    /**
+     * Converts a search result in the range to the index of the least element
+     * greater than (or equal) to the key, {@code to} if there is none.
+     */
+    protected static int greaterThan(int index, boolean orEqual) {
+        return index < 0 ? ~index : orEqual ? index : index + 1;
+    }
+}
@@ -14,28 +14,341 @@ import java.util.*;
 
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
-    private final List<T> items;
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    private final Object[] items;
+    private final int from;
+    private final int to;
     private final Comparator<? super T> comparator;
+    private final SearchIndex<T> index;
     private NavigableSet<T> descending = null;
 
     public ArraySet() {
         this(Collections.emptyList(), null);
     }
 
-    public ArraySet(@NotNull Collection<T> data) {
+    public ArraySet(@NotNull Collection<? extends T> data) {
         this(data, null);
     }
 
-    public ArraySet(@NotNull Collection<T> data, @Nullable Comparator<? super T> cmp) {
+    /**
+     * Copies elements to an array, sorts it by {@link Arrays#parallelSort} and removes duplicates in place,
+     * keeping the first of equal elements. Sorting is skipped if {@code data} is a {@link SortedSet}
+     * with the same comparator.
+     */
+    public ArraySet(@NotNull Collection<? extends T> data, @Nullable Comparator<? super T> cmp) {
         comparator = cmp;
-        TreeSet<T> treeSet = new TreeSet<>(comparator);
-        treeSet.addAll(data);
-        items = Collections.unmodifiableList(new ArrayList<>(treeSet));
+        items = data.toArray();
+        from = 0;
+        index = null;
+        if (data instanceof SortedSet && Objects.equals(((SortedSet<?>) data).comparator(), cmp)) {
+            to = items.length;
+        } else {
+            to = sortDistinct(items, cmp);
+        }
     }
 
-    private ArraySet(@NotNull List<T> sortedList, @Nullable Comparator<? super T> cmp, boolean sorted) {
+    private ArraySet(@NotNull Object[] items, int from, int to, @Nullable Comparator<? super T> cmp,
+                     @Nullable SearchIndex<T> index) {
         comparator = cmp;
-        items = sortedList;
+        this.items = items;
+        this.from = from;
+        this.to = to;
+        this.index = index;
+    }
+
+    /**
+     * Returns a set with the same elements that searches them through an index
+     * in Eytzinger (breadth-first) order: the first levels of the implicit search tree
+     * share a few cache lines, and each step of the search is branchless.
+     * Views of the returned set share its index.
+     * <p>
+     * The index takes {@code O(n)} time to build and a reference and an {@code int} per element.
+     * It pays off while the index fits in the cache: for larger sets lookups are dominated
+     * by dereferencing the compared elements, and the index only adds misses of its own.
+     */
+    public ArraySet<T> withSearchIndex() {
+        return index != null ? this : new ArraySet<>(items, from, to, comparator,
+                new SearchIndex<>(items, from, to, comparator));
+    }
+
+    /**
+     * Elements of a range of the array in Eytzinger order, {@code tree[k]} has children
+     * {@code tree[2k]} and {@code tree[2k + 1]}, and {@code rank[k]} is the index of {@code tree[k]}
+     * in the array.
+     */
+    private static final class SearchIndex<T> {
+        private final Object[] tree;
+        private final int[] rank;
+        private final Comparator<? super T> comparator;
+
+        SearchIndex(Object[] items, int from, int to, Comparator<? super T> comparator) {
+            this.comparator = comparator;
+            tree = new Object[to - from + 1];
+            rank = new int[to - from + 1];
+            fill(items, from, 1);
+        }
+
+        private int fill(Object[] items, int i, int k) {
+            if (k < tree.length) {
+                i = fill(items, i, 2 * k);
+                tree[k] = items[i];
+                rank[k] = i++;
+                i = fill(items, i, 2 * k + 1);
+            }
+            return i;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(Object a, T b) {
+            return comparator == null ? ((Comparable<? super T>) a).compareTo(b) : comparator.compare((T) a, b);
+        }
+
+        /**
+         * Searches the element in {@code [from, to)} of the array the same way as {@link Arrays#binarySearch}.
+         * The range should lie within the indexed range.
+         */
+        int search(T element, int from, int to) {
+            int k = 1;
+            while (k < tree.length) {
+                k = 2 * k + (compare(tree[k], element) < 0 ? 1 : 0);
+            }
+            // Drop the trailing right turns and the last left turn to get the least element >= key
+            k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+            if (k == 0) {
+                return ~to;
+            }
+            int lower = rank[k];
+            if (lower < from) {
+                return ~from;
+            }
+            if (lower >= to) {
+                return ~to;
+            }
+            return compare(tree[k], element) == 0 ? lower : ~lower;
+        }
+    }
+
+    /**
+     * @return number of distinct elements moved to the beginning of the array
+     */
+    private static <T> int sortDistinct(Object[] items, Comparator<? super T> cmp) {
+        Comparator<Object> order = order(cmp);
+        if (cmp == null && items.length < PARALLEL_SORT_THRESHOLD) {
+            Arrays.sort(items);
+        } else {
+            Arrays.parallelSort(items, order);
+        }
+        int size = 0;
+        for (Object item : items) {
+            if (size == 0 || order.compare(items[size - 1], item) != 0) {
+                items[size++] = item;
+            }
+        }
+        Arrays.fill(items, size, items.length, null);
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> order(Comparator<?> cmp) {
+        return cmp == null
+                ? (Comparator<Object>) (Comparator<?>) Comparator.naturalOrder()
+                : (Comparator<Object>) cmp;
+    }
+
+    /**
+     * Returns a set of the elements contained in either of the sets.
+     * For elements contained in both sets the ones from {@code a} are kept.
+     *
+     * @throws IllegalArgumentException if the sets have different comparators
+     */
+    public static <T> ArraySet<T> union(@NotNull ArraySet<T> a, @NotNull ArraySet<T> b) {
+        return apply(SetOperations.Operation.UNION, a, b);
+    }
+
+    /**
+     * Returns a set of the elements of {@code a} that are contained in {@code b}.
+     *
+     * @throws IllegalArgumentException if the sets have different comparators
+     */
+    public static <T> ArraySet<T> intersection(@NotNull ArraySet<T> a, @NotNull ArraySet<T> b) {
+        return apply(SetOperations.Operation.INTERSECTION, a, b);
+    }
+
+    /**
+     * Returns a set of the elements of {@code a} that are not contained in {@code b}.
+     *
+     * @throws IllegalArgumentException if the sets have different comparators
+     */
+    public static <T> ArraySet<T> difference(@NotNull ArraySet<T> a, @NotNull ArraySet<T> b) {
+        return apply(SetOperations.Operation.DIFFERENCE, a, b);
+    }
+
+    /**
+     * Returns a set of the elements contained in exactly one of the sets.
+     *
+     * @throws IllegalArgumentException if the sets have different comparators
+     */
+    public static <T> ArraySet<T> symmetricDifference(@NotNull ArraySet<T> a, @NotNull ArraySet<T> b) {
+        return apply(SetOperations.Operation.SYMMETRIC_DIFFERENCE, a, b);
+    }
+
+    /**
+     * Merges the sets in linear time, or in {@code O(m log(n / m))} if one of them is much smaller.
+     * Large sets are merged in parallel.
+     */
+    private static <T> ArraySet<T> apply(SetOperations.Operation op, ArraySet<T> a, ArraySet<T> b) {
+        if (!Objects.equals(a.comparator, b.comparator)) {
+            throw new IllegalArgumentException("ArraySets have different comparators");
+        }
+        Object[] items = SetOperations.apply(op,
+                new SetOperations.Range(a.items, a.from, a.to),
+                new SetOperations.Range(b.items, b.from, b.to),
+                order(a.comparator));
+        return new ArraySet<>(items, 0, items.length, a.comparator, null);
+    }
+
+    /**
+     * Returns a set with the elements of this set and the given ones.
+     * Elements of this set are kept for equal ones, as by {@link Set#add}.
+     * Only the given elements are sorted, so it takes {@code O(n + k log k)}.
+     */
+    public ArraySet<T> withAll(@NotNull Collection<? extends T> elements) {
+        return toBuilder().addAll(elements).build();
+    }
+
+    /**
+     * Returns a set with the elements of this set except the given ones.
+     * Only the given elements are sorted, so it takes {@code O(n + k log k)}.
+     */
+    public ArraySet<T> withoutAll(@NotNull Collection<?> elements) {
+        return toBuilder().removeAll(elements).build();
+    }
+
+    /**
+     * @return builder of sets that starts with the elements of this set
+     */
+    public Builder<T> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * @return builder of sets ordered by the given comparator that starts with no elements
+     */
+    public static <T> Builder<T> builder(@Nullable Comparator<? super T> cmp) {
+        return new Builder<>(new ArraySet<>(Collections.emptyList(), cmp));
+    }
+
+    /**
+     * Collects additions and removals and applies them to a set at once, with the same result
+     * as applying them one by one: of operations with equal elements the last one wins, and an element
+     * already contained in the set, or added earlier and not removed since, is kept, as by {@link Set#add}.
+     * {@link #build()} sorts the collected elements and merges them with the set in a linear pass;
+     * the original set is not changed.
+     *
+     * @param <T> the type of elements maintained by the built set
+     */
+    public static final class Builder<T> {
+        private ArraySet<T> set;
+        private final List<T> elements = new ArrayList<>();
+        private final BitSet added = new BitSet();
+
+        private Builder(ArraySet<T> set) {
+            this.set = set;
+        }
+
+        public Builder<T> add(T element) {
+            added.set(elements.size());
+            elements.add(element);
+            return this;
+        }
+
+        public Builder<T> addAll(@NotNull Collection<? extends T> elements) {
+            for (T element : elements) {
+                add(element);
+            }
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Builder<T> remove(Object element) {
+            elements.add((T) element);
+            return this;
+        }
+
+        public Builder<T> removeAll(@NotNull Collection<?> elements) {
+            for (Object element : elements) {
+                remove(element);
+            }
+            return this;
+        }
+
+        /**
+         * Applies the collected operations. The builder may be used further
+         * to build sets with more changes.
+         */
+        public ArraySet<T> build() {
+            if (elements.isEmpty()) {
+                return set;
+            }
+            int addedCount = added.cardinality();
+            if (addedCount == 0 || addedCount == elements.size()) {
+                ArraySet<T> delta = new ArraySet<>(elements, set.comparator);
+                return update(addedCount == 0 ? difference(set, delta) : union(set, delta));
+            }
+            Comparator<Object> order = order(set.comparator);
+            Integer[] operations = new Integer[elements.size()];
+            for (int i = 0; i < operations.length; i++) {
+                operations[i] = i;
+            }
+            Arrays.parallelSort(operations, (i, j) -> order.compare(elements.get(i), elements.get(j)));
+            Object[] additions = new Object[operations.length];
+            Object[] removals = new Object[operations.length];
+            int additionCount = 0;
+            int removalCount = 0;
+            for (int i = 0; i < operations.length; i++) {
+                // operations with equal elements are in the order they were made, as the sort is stable
+                int last = operations[i];
+                int firstAdded = added.get(last) ? last : -1;
+                boolean removed = !added.get(last);
+                while (i + 1 < operations.length
+                        && order.compare(elements.get(operations[i + 1]), elements.get(last)) == 0) {
+                    last = operations[++i];
+                    if (!added.get(last)) {
+                        removed = true;
+                        firstAdded = -1;
+                    } else if (firstAdded < 0) {
+                        firstAdded = last;
+                    }
+                }
+                if (removed) {
+                    removals[removalCount++] = elements.get(last);
+                }
+                if (firstAdded >= 0) {
+                    additions[additionCount++] = elements.get(firstAdded);
+                }
+            }
+            ArraySet<T> result = set;
+            if (removalCount > 0) {
+                result = difference(result, new ArraySet<>(removals, 0, removalCount, set.comparator, null));
+            }
+            if (additionCount > 0) {
+                result = union(result, new ArraySet<>(additions, 0, additionCount, set.comparator, null));
+            }
+            return update(result);
+        }
+
+        private ArraySet<T> update(ArraySet<T> result) {
+            set = result;
+            elements.clear();
+            added.clear();
+            return result;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T get(int index) {
+        return (T) items[index];
     }
 
     @Override
@@ -43,7 +356,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException("ArraySet is empty");
         }
-        return items.get(0);
+        return get(from);
     }
 
     @Override
@@ -51,23 +364,51 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException("ArraySet is empty");
         }
-        return items.get(items.size() - 1);
+        return get(to - 1);
     }
 
     @Override
     public int size() {
-        return items.size();
+        return to - from;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public boolean contains(Object o) {
-        return Collections.binarySearch(items, (T) o, comparator) >= 0;
+        return search((T) o) >= 0;
     }
 
     @Override
     public Iterator<T> iterator() {
-        return items.listIterator();
+        return new Iterator<T>() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public T next() {
+                if (index == to) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator that splits this set evenly by index and reports
+     * {@link Spliterator#SORTED} with the comparator of this set.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new ArraySpliterator<>(this::get, from, to, comparator, false);
+    }
+
+    Spliterator<T> descendingSpliterator() {
+        return new ArraySpliterator<>(this::get, from, to, comparator, true);
     }
 
     @Override
@@ -103,14 +444,29 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @Override
     public NavigableSet<T> descendingSet() {
         if (descending == null) {
-            descending = new ArraySet<>(items, Collections.reverseOrder(comparator));
+            descending = new DescendingSet<>(this);
         }
         return descending;
     }
 
     @Override
     public Iterator<T> descendingIterator() {
-        return descendingSet().iterator();
+        return new Iterator<T>() {
+            private int index = to;
+
+            @Override
+            public boolean hasNext() {
+                return index > from;
+            }
+
+            @Override
+            public T next() {
+                if (index == from) {
+                    throw new NoSuchElementException();
+                }
+                return get(--index);
+            }
+        };
     }
 
     /**
@@ -120,7 +476,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @Override
     public T lower(T e) {
         int index = lessThan(e, false);
-        return index < 0 ? null : items.get(index);
+        return index < from ? null : get(index);
     }
 
     /**
@@ -130,7 +486,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @Override
     public T floor(T e) {
         int index = lessThan(e, true);
-        return index < 0 ? null : items.get(index);
+        return index < from ? null : get(index);
     }
 
     /**
@@ -140,7 +496,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @Override
     public T ceiling(T e) {
         int index = greaterThan(e, true);
-        return index < items.size() ? items.get(index) : null;
+        return index < to ? get(index) : null;
     }
 
     /**
@@ -150,7 +506,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @Override
     public T higher(T e) {
         int index = greaterThan(e, false);
-        return index < items.size() ? items.get(index) : null;
+        return index < to ? get(index) : null;
     }
 
     /**
@@ -189,20 +545,20 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      *         {@code toElement} lies outside the bounds of the range.
      */
     @Override
-    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+    public ArraySet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
         int l = greaterThan(fromElement, fromInclusive);
         int r = lessThan(toElement, toInclusive) + 1;
-        return new ArraySet<>(items.subList(l, r < l ? l : r), comparator, true);
+        return new ArraySet<>(items, l, r < l ? l : r, comparator, index);
     }
 
     @Override
-    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
-        return new ArraySet<>(items.subList(0, lessThan(toElement, inclusive) + 1), comparator, true);
+    public ArraySet<T> headSet(T toElement, boolean inclusive) {
+        return new ArraySet<>(items, from, lessThan(toElement, inclusive) + 1, comparator, index);
     }
 
     @Override
-    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
-        return new ArraySet<>(items.subList(greaterThan(fromElement, inclusive), items.size()), comparator, true);
+    public ArraySet<T> tailSet(T fromElement, boolean inclusive) {
+        return new ArraySet<>(items, greaterThan(fromElement, inclusive), to, comparator, index);
     }
 
     /**
@@ -210,7 +566,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      *         greater than (or equal) to the given element
      */
     private int greaterThan(T element, boolean orEqual) {
-        int index = Collections.binarySearch(items, element, comparator);
+        int index = search(element);
         return index < 0
                 ? ~index // Insertion point: the index of first element greater than the key
                 : orEqual ? index : index + 1;
@@ -221,9 +577,17 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
      *         less than (or equal) to the given element
      */
     private int lessThan(T element, boolean orEqual) {
-        int index = Collections.binarySearch(items, element, comparator);
+        int index = search(element);
         return index < 0
                 ? ~index - 1 // The index of last element less than the key
                 : orEqual ? index : index - 1;
     }
-}
\ No newline at end of file
+
+    @SuppressWarnings("unchecked")
+    private int search(T element) {
+        if (index != null) {
+            return index.search(element, from, to);
+        }
+        return Arrays.binarySearch((T[]) items, from, to, element, comparator);
+    }
+}
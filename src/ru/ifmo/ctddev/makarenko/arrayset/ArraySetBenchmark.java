@@ -0,0 +1,117 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compares construction of {@link ArraySet} with construction through a {@link TreeSet},
+ * which {@code ArraySet} used before, on random and on already sorted input,
+ * lookups by binary search with lookups through {@link ArraySet#withSearchIndex() the search index},
+ * {@link ArraySet#intersection} and {@link ArraySet#union} with filtering by {@code contains},
+ * {@link ArraySet#withAll} with rebuilding a set to add elements,
+ * and parallel stream reductions over the set spliterator with ones over an iterator-based spliterator.
+ * <p>
+ * Usage: {@code java ArraySetBenchmark [sizes...]}, sizes are {@code 10^3} to {@code 10^6} by default,
+ * {@code 10^8} needs a heap of several gigabytes.
+ */
+public class ArraySetBenchmark {
+
+    private static final int[] DEFAULT_SIZES = {1000, 10000, 100000, 1000000};
+    private static final int ITERATIONS = 100;
+    private static final int LOOKUPS = 1 << 20;
+    private static final int UPDATES = 1000;
+
+    private interface Construction {
+        Collection<Integer> apply(Collection<Integer> data);
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? DEFAULT_SIZES : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        Construction treeSet = data -> Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(data)));
+        Construction arraySet = ArraySet::new;
+        for (int size : sizes) {
+            Random random = new Random(size);
+            List<Integer> data = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                data.add(random.nextInt(size));
+            }
+            TreeSet<Integer> sorted = new TreeSet<>(data);
+            measure("random", size, "TreeSet", treeSet, data);
+            measure("random", size, "ArraySet", arraySet, data);
+            measure("sorted", size, "TreeSet", treeSet, sorted);
+            measure("sorted", size, "ArraySet", arraySet, sorted);
+
+            ArraySet<Integer> set = new ArraySet<>(sorted);
+            int[] keys = random.ints(LOOKUPS, 0, size).toArray();
+            lookup(size, "binary", set, keys);
+            lookup(size, "indexed", set.withSearchIndex(), keys);
+
+            ArraySet<Integer> other = new ArraySet<>(random.ints(size, 0, size).boxed().collect(Collectors.toList()));
+            ArraySet<Integer> small = new ArraySet<>(random.ints(size / 1000 + 1, 0, size).boxed()
+                    .collect(Collectors.toList()));
+            Construction containsOther = input -> input.stream().filter(other::contains).collect(Collectors.toList());
+            measure("and", size, "contains", containsOther, set);
+            measure("and", size, "merge", input -> ArraySet.intersection(set, other), set);
+            measure("and/1000", size, "contains", containsOther, small);
+            measure("and/1000", size, "merge", input -> ArraySet.intersection(small, other), small);
+            measure("or", size, "merge", input -> ArraySet.union(set, other), set);
+
+            List<Integer> updates = random.ints(UPDATES, 0, 2 * size).boxed().collect(Collectors.toList());
+            measure("update", size, "rebuild", input -> {
+                List<Integer> all = new ArrayList<>(input);
+                all.addAll(updates);
+                return new ArraySet<>(all);
+            }, set);
+            measure("update", size, "withAll", input -> set.withAll(updates), set);
+
+            stream(size, "iterator", () -> StreamSupport.stream(Spliterators.spliterator(set, Spliterator.DISTINCT), true));
+            stream(size, "array", set::parallelStream);
+            stream(size, "desc/iter", () -> StreamSupport.stream(
+                    Spliterators.spliterator(set.descendingSet(), Spliterator.DISTINCT), true));
+            stream(size, "desc/arr", () -> set.descendingSet().parallelStream());
+        }
+    }
+
+    private static void stream(int size, String name, Supplier<Stream<Integer>> stream) {
+        long best = Long.MAX_VALUE;
+        long sum = 0;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            sum += stream.get().mapToLong(Integer::longValue).sum();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf(Locale.ROOT, "%-8s %10d %-9s %10.3f ms (%d)%n", "stream", size, name, best / 1e6, sum);
+    }
+
+    private static void lookup(int size, String name, NavigableSet<Integer> set, int[] keys) {
+        long best = Long.MAX_VALUE;
+        int found = 0;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            for (int key : keys) {
+                found += set.ceiling(key) == null ? 0 : 1;
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf(Locale.ROOT, "%-8s %10d %-9s %10.1f ns (%d)%n", "ceiling", size, name,
+                (double) best / keys.length, found);
+    }
+
+    private static void measure(String input, int size, String name, Construction construction,
+                                Collection<Integer> data) {
+        int iterations = Math.max(1, Math.min(ITERATIONS, 10_000_000 / size));
+        long best = Long.MAX_VALUE;
+        int result = 0;
+        for (int i = 0; i < 2 * iterations; i++) {
+            long start = System.nanoTime();
+            result += construction.apply(data).size();
+            if (i >= iterations) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-8s %10d %-9s %10.3f ms (%d)%n", input, size, name, best / 1e6, result);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * {@link Spliterator} over the range {@code [from, to)} of sorted distinct elements accessed by index,
+ * in ascending or descending order. Splits halve the range, so parallel streams get even parts.
+ *
+ * @param <T> the type of elements
+ */
+final class ArraySpliterator<T> implements Spliterator<T> {
+
+    private static final int CHARACTERISTICS = ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE;
+
+    private final IntFunction<T> get;
+    private final Comparator<? super T> comparator;
+    private final boolean descending;
+    private int from;
+    private int to;
+
+    /**
+     * @param comparator order of the elements in the range, {@code null} for natural ordering
+     */
+    ArraySpliterator(IntFunction<T> get, int from, int to, Comparator<? super T> comparator, boolean descending) {
+        this.get = get;
+        this.from = from;
+        this.to = to;
+        this.comparator = comparator;
+        this.descending = descending;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (from >= to) {
+            return false;
+        }
+        action.accept(get.apply(descending ? --to : from++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (descending) {
+            for (int i = to - 1; i >= from; i--) {
+                action.accept(get.apply(i));
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                action.accept(get.apply(i));
+            }
+        }
+        from = to;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        int mid = (from + to) >>> 1;
+        if (mid == from) {
+            return null;
+        }
+        Spliterator<T> prefix;
+        if (descending) {
+            prefix = new ArraySpliterator<>(get, mid, to, comparator, true);
+            to = mid;
+        } else {
+            prefix = new ArraySpliterator<>(get, from, mid, comparator, false);
+            from = mid;
+        }
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return descending ? Collections.reverseOrder(comparator) : comparator;
+    }
+}
@@ -0,0 +1,289 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import com.sun.istack.internal.*;
+
+import java.util.*;
+
+/**
+ * Unmodifiable Sorted Set of {@code int} values stored in compressed blocks.
+ * <p>
+ * Sorted values are split into blocks of {@value #BLOCK_SIZE}. A block keeps its first value as a base
+ * and the differences of its values from the base bit-packed with the width of the largest difference
+ * (frame of reference), so a dense set takes a few bits per value. Any value can be decoded in constant
+ * time, and bases of blocks form a skip index: a search looks up the block by the bases and then
+ * the value inside the block.
+ * <p>
+ * Like {@link IntArraySet}, the set provides unboxed access and range views that share its blocks.
+ */
+public class CompressedIntSet extends AbstractPrimitiveArraySet<Integer> {
+
+    private static final int BLOCK_SHIFT = 7;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final Blocks blocks;
+
+    public CompressedIntSet() {
+        this(new IntArraySet());
+    }
+
+    public CompressedIntSet(@NotNull int... data) {
+        this(IntArraySet.of(data));
+    }
+
+    public CompressedIntSet(@NotNull Collection<? extends Integer> data) {
+        this(IntArraySet.copyOf(data));
+    }
+
+    public CompressedIntSet(@NotNull IntArraySet set) {
+        this(new Blocks(set.toIntArray()), 0, set.size());
+    }
+
+    private CompressedIntSet(@NotNull Blocks blocks, int from, int to) {
+        super(from, to);
+        this.blocks = blocks;
+    }
+
+    /**
+     * Bit-packed blocks of sorted distinct values.
+     */
+    private static final class Blocks {
+        /** First value of every block. */
+        final int[] bases;
+        /** Bit width of differences from the base in every block. */
+        final byte[] widths;
+        /** Index of the first word of every block in {@link #data}. */
+        final int[] offsets;
+        final long[] data;
+        final int size;
+
+        Blocks(int[] values) {
+            size = values.length;
+            int count = (values.length + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+            bases = new int[count];
+            widths = new byte[count];
+            offsets = new int[count + 1];
+            for (int b = 0; b < count; b++) {
+                int start = b << BLOCK_SHIFT;
+                int end = Math.min(values.length, start + BLOCK_SIZE);
+                bases[b] = values[start];
+                long range = (long) values[end - 1] - values[start];
+                widths[b] = (byte) (Long.SIZE - Long.numberOfLeadingZeros(range));
+                offsets[b + 1] = offsets[b] + (int) (((long) widths[b] * (end - start) + Long.SIZE - 1) / Long.SIZE);
+            }
+            data = new long[offsets[count]];
+            for (int b = 0; b < count; b++) {
+                int start = b << BLOCK_SHIFT;
+                int end = Math.min(values.length, start + BLOCK_SIZE);
+                int width = widths[b];
+                long bit = (long) offsets[b] * Long.SIZE;
+                for (int i = start; i < end && width > 0; i++, bit += width) {
+                    long delta = (long) values[i] - bases[b];
+                    int word = (int) (bit >>> 6);
+                    int shift = (int) (bit & 63);
+                    data[word] |= delta << shift;
+                    if (shift + width > Long.SIZE) {
+                        data[word + 1] |= delta >>> (Long.SIZE - shift);
+                    }
+                }
+            }
+        }
+
+        int get(int index) {
+            int b = index >>> BLOCK_SHIFT;
+            int width = widths[b];
+            if (width == 0) {
+                return bases[b];
+            }
+            long bit = (long) offsets[b] * Long.SIZE + (long) (index & (BLOCK_SIZE - 1)) * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long delta = data[word] >>> shift;
+            if (shift + width > Long.SIZE) {
+                delta |= data[word + 1] << (Long.SIZE - shift);
+            }
+            return (int) (bases[b] + (delta & ((1L << width) - 1)));
+        }
+
+        /**
+         * Searches the value in all blocks the same way as {@link Arrays#binarySearch}.
+         */
+        int search(int value) {
+            int b = Arrays.binarySearch(bases, value);
+            if (b >= 0) {
+                return b << BLOCK_SHIFT;
+            }
+            b = ~b - 1;
+            if (b < 0) {
+                return ~0;
+            }
+            int low = (b << BLOCK_SHIFT) + 1;
+            int high = Math.min(size, (b + 1) << BLOCK_SHIFT) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int v = get(mid);
+                if (v < value) {
+                    low = mid + 1;
+                } else if (v > value) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return ~low;
+        }
+
+        long bytes() {
+            return 4L * bases.length + widths.length + 4L * offsets.length + 8L * data.length;
+        }
+    }
+
+    @Override
+    protected Integer get(int index) {
+        return blocks.get(index);
+    }
+
+    @Override
+    protected int search(Integer element) {
+        return search((int) element);
+    }
+
+    /**
+     * Searches the element in {@code [from, to)} the same way as {@link Arrays#binarySearch}.
+     */
+    private int search(int element) {
+        int index = blocks.search(element);
+        int point = index < 0 ? ~index : index;
+        if (point < from) {
+            return ~from;
+        }
+        if (point >= to) {
+            return ~to;
+        }
+        return index;
+    }
+
+    @Override
+    protected CompressedIntSet view(int from, int to) {
+        return new CompressedIntSet(blocks, from, to);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    public boolean contains(int e) {
+        return search(e) >= 0;
+    }
+
+    public int firstInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return blocks.get(from);
+    }
+
+    public int lastInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return blocks.get(to - 1);
+    }
+
+    /**
+     * Returns the greatest element in this set strictly less than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public int lower(int e, int absent) {
+        int index = lessThan(search(e), false);
+        return index < from ? absent : blocks.get(index);
+    }
+
+    /**
+     * Returns the greatest element in this set less than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public int floor(int e, int absent) {
+        int index = lessThan(search(e), true);
+        return index < from ? absent : blocks.get(index);
+    }
+
+    /**
+     * Returns the least element in this set greater than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public int ceiling(int e, int absent) {
+        int index = greaterThan(search(e), true);
+        return index < to ? blocks.get(index) : absent;
+    }
+
+    /**
+     * Returns the least element in this set strictly greater than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public int higher(int e, int absent) {
+        int index = greaterThan(search(e), false);
+        return index < to ? blocks.get(index) : absent;
+    }
+
+    public CompressedIntSet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        int l = greaterThan(search(fromElement), fromInclusive);
+        int r = lessThan(search(toElement), toInclusive) + 1;
+        return view(l, r < l ? l : r);
+    }
+
+    public CompressedIntSet headSet(int toElement, boolean inclusive) {
+        return view(from, lessThan(search(toElement), inclusive) + 1);
+    }
+
+    public CompressedIntSet tailSet(int fromElement, boolean inclusive) {
+        return view(greaterThan(search(fromElement), inclusive), to);
+    }
+
+    /**
+     * Iterates over the values without boxing them.
+     */
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index == to) {
+                    throw new NoSuchElementException();
+                }
+                return blocks.get(index++);
+            }
+        };
+    }
+
+    public int[] toIntArray() {
+        int[] result = new int[size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = blocks.get(from + i);
+        }
+        return result;
+    }
+
+    /**
+     * @return approximate number of bytes taken by the blocks, which are shared with views
+     */
+    public long getCompressedBytes() {
+        return blocks.bytes();
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += blocks.get(i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Compares memory, {@code ceiling} latency and iteration speed of {@link ArraySet}, {@link IntArraySet}
+ * and {@link CompressedIntSet} on a posting list: sorted values with random gaps.
+ * <p>
+ * Usage: {@code java CompressedIntSetBenchmark [size [maximum gap]]}, {@code 1000000} values
+ * with gaps up to {@code 8} by default. Memory is measured as the growth of the used heap after GC.
+ */
+public class CompressedIntSetBenchmark {
+
+    private static final int LOOKUPS = 1 << 20;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int gap = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        Random random = new Random(size);
+        int[] values = new int[size];
+        for (int i = 1; i < size; i++) {
+            values[i] = values[i - 1] + 1 + random.nextInt(gap);
+        }
+        int[] keys = random.ints(LOOKUPS, 0, values[size - 1] + 1).toArray();
+
+        ArraySet<Integer> arraySet = measure("ArraySet", () -> {
+            List<Integer> boxed = new ArrayList<>(size);
+            for (int value : values) {
+                boxed.add(value);
+            }
+            return new ArraySet<>(boxed, null);
+        });
+        IntArraySet intArraySet = measure("IntArraySet", () -> IntArraySet.of(values));
+        CompressedIntSet compressed = measure("CompressedIntSet", () -> new CompressedIntSet(intArraySet));
+        System.out.printf(Locale.ROOT, "%-16s %10.2f bits/value (computed)%n", "CompressedIntSet",
+                compressed.getCompressedBytes() * 8.0 / size);
+
+        for (int i = 0; i < 3; i++) {
+            lookup("ArraySet", keys, key -> {
+                Integer result = arraySet.ceiling(key);
+                return result == null ? -1 : result;
+            });
+            lookup("IntArraySet", keys, key -> intArraySet.ceiling(key, -1));
+            lookup("CompressedIntSet", keys, key -> compressed.ceiling(key, -1));
+        }
+        for (int i = 0; i < 3; i++) {
+            iterate("ArraySet", arraySet.iterator());
+            iterate("IntArraySet", intArraySet.iterator());
+            iterate("CompressedIntSet", compressed.iterator());
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static <T> T measure(String name, Supplier<T> factory) {
+        long before = usedMemory();
+        T set = factory.get();
+        long after = usedMemory();
+        System.out.printf(Locale.ROOT, "%-16s %10.2f MB%n", name, (after - before) / 1e6);
+        return set;
+    }
+
+    private static void lookup(String name, int[] keys, IntUnaryOperator ceiling) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int key : keys) {
+            sum += ceiling.applyAsInt(key);
+        }
+        System.out.printf(Locale.ROOT, "%-16s %10.1f ns/ceiling (%d)%n", name,
+                (double) (System.nanoTime() - start) / keys.length, sum);
+    }
+
+    private static void iterate(String name, Iterator<Integer> iterator) {
+        long start = System.nanoTime();
+        long sum = 0;
+        int count = 0;
+        if (iterator instanceof PrimitiveIterator.OfInt) {
+            PrimitiveIterator.OfInt ints = (PrimitiveIterator.OfInt) iterator;
+            while (ints.hasNext()) {
+                sum += ints.nextInt();
+                count++;
+            }
+        } else {
+            while (iterator.hasNext()) {
+                sum += iterator.next();
+                count++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-16s %10.2f ns/value (%d)%n", name,
+                (double) (System.nanoTime() - start) / count, sum);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import java.util.*;
+
+/**
+ * Reverse order view of a {@link NavigableSet}.
+ *
+ * @param <T> the type of elements maintained by this set
+ */
+final class DescendingSet<T> extends AbstractSet<T> implements NavigableSet<T> {
+
+    private final NavigableSet<T> set;
+
+    DescendingSet(NavigableSet<T> set) {
+        this.set = set;
+    }
+
+    @Override
+    public int size() {
+        return set.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return set.contains(o);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return set.descendingIterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        if (set instanceof ArraySet) {
+            return ((ArraySet<T>) set).descendingSpliterator();
+        }
+        if (set instanceof AbstractPrimitiveArraySet) {
+            return ((AbstractPrimitiveArraySet<T>) set).descendingSpliterator();
+        }
+        return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.DISTINCT);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return set.iterator();
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return set;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return Collections.reverseOrder(set.comparator());
+    }
+
+    @Override
+    public T first() {
+        return set.last();
+    }
+
+    @Override
+    public T last() {
+        return set.first();
+    }
+
+    @Override
+    public T lower(T e) {
+        return set.higher(e);
+    }
+
+    @Override
+    public T floor(T e) {
+        return set.ceiling(e);
+    }
+
+    @Override
+    public T ceiling(T e) {
+        return set.floor(e);
+    }
+
+    @Override
+    public T higher(T e) {
+        return set.lower(e);
+    }
+
+    @Override
+    public T pollFirst() {
+        return set.pollLast();
+    }
+
+    @Override
+    public T pollLast() {
+        return set.pollFirst();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        return set.subSet(toElement, toInclusive, fromElement, fromInclusive).descendingSet();
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return set.tailSet(toElement, inclusive).descendingSet();
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return set.headSet(fromElement, inclusive).descendingSet();
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
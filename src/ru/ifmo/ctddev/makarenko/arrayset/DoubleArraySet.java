@@ -0,0 +1,194 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import com.sun.istack.internal.*;
+
+import java.util.*;
+
+/**
+ * Unmodifiable Sorted Set of {@code double} values backed by a sorted {@code double[]}.
+ * <p>
+ * Besides {@link NavigableSet} methods, which box elements, the set provides unboxed
+ * {@link #contains(double)}, navigation with a value returned when there is no such element,
+ * and range views that share the array of this set.
+ * <p>
+ * Elements are ordered and compared by {@link Double#compare}, so {@code -0.0} and {@code 0.0}
+ * are different elements and all {@code NaN} values are equal and greater than any other value.
+ *
+ * @see ArraySet
+ */
+public class DoubleArraySet extends AbstractPrimitiveArraySet<Double> {
+
+    private final double[] items;
+
+    public DoubleArraySet() {
+        this(new double[0], 0, 0);
+    }
+
+    /**
+     * @return set of the given values, the array is copied
+     */
+    public static DoubleArraySet of(@NotNull double... values) {
+        return new DoubleArraySet(values.clone());
+    }
+
+    /**
+     * @return set of the values of the collection
+     */
+    public static DoubleArraySet copyOf(@NotNull Collection<? extends Double> values) {
+        return new DoubleArraySet(values.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    /**
+     * @param items array owned by the set, sorted in place
+     */
+    private DoubleArraySet(@NotNull double[] items) {
+        super(0, distinct(items));
+        this.items = items;
+    }
+
+    private DoubleArraySet(@NotNull double[] items, int from, int to) {
+        super(from, to);
+        this.items = items;
+    }
+
+    /**
+     * Sorts the array and moves distinct elements to its beginning.
+     *
+     * @return number of distinct elements
+     */
+    private static int distinct(double[] items) {
+        Arrays.parallelSort(items);
+        int size = 0;
+        for (double item : items) {
+            if (size == 0 || Double.compare(items[size - 1], item) != 0) {
+                items[size++] = item;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    protected Double get(int index) {
+        return items[index];
+    }
+
+    @Override
+    protected int search(Double element) {
+        return search((double) element);
+    }
+
+    private int search(double element) {
+        return Arrays.binarySearch(items, from, to, element);
+    }
+
+    @Override
+    protected DoubleArraySet view(int from, int to) {
+        return new DoubleArraySet(items, from, to);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Double && contains((double) (Double) o);
+    }
+
+    public boolean contains(double e) {
+        return search(e) >= 0;
+    }
+
+    public double firstDouble() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return items[from];
+    }
+
+    public double lastDouble() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return items[to - 1];
+    }
+
+    /**
+     * Returns the greatest element in this set strictly less than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public double lower(double e, double absent) {
+        int index = lessThan(search(e), false);
+        return index < from ? absent : items[index];
+    }
+
+    /**
+     * Returns the greatest element in this set less than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public double floor(double e, double absent) {
+        int index = lessThan(search(e), true);
+        return index < from ? absent : items[index];
+    }
+
+    /**
+     * Returns the least element in this set greater than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public double ceiling(double e, double absent) {
+        int index = greaterThan(search(e), true);
+        return index < to ? items[index] : absent;
+    }
+
+    /**
+     * Returns the least element in this set strictly greater than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public double higher(double e, double absent) {
+        int index = greaterThan(search(e), false);
+        return index < to ? items[index] : absent;
+    }
+
+    public DoubleArraySet subSet(double fromElement, boolean fromInclusive, double toElement, boolean toInclusive) {
+        int l = greaterThan(search(fromElement), fromInclusive);
+        int r = lessThan(search(toElement), toInclusive) + 1;
+        return view(l, r < l ? l : r);
+    }
+
+    public DoubleArraySet headSet(double toElement, boolean inclusive) {
+        return view(from, lessThan(search(toElement), inclusive) + 1);
+    }
+
+    public DoubleArraySet tailSet(double fromElement, boolean inclusive) {
+        return view(greaterThan(search(fromElement), inclusive), to);
+    }
+
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return new PrimitiveIterator.OfDouble() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public double nextDouble() {
+                if (index == to) {
+                    throw new NoSuchElementException();
+                }
+                return items[index++];
+            }
+        };
+    }
+
+    public double[] toDoubleArray() {
+        return Arrays.copyOfRange(items, from, to);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += Double.hashCode(items[i]);
+        }
+        return hash;
+    }
+}
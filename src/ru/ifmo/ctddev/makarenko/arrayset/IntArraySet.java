@@ -0,0 +1,191 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import com.sun.istack.internal.*;
+
+import java.util.*;
+
+/**
+ * Unmodifiable Sorted Set of {@code int} values backed by a sorted {@code int[]}.
+ * <p>
+ * Besides {@link NavigableSet} methods, which box elements, the set provides unboxed
+ * {@link #contains(int)}, navigation with a value returned when there is no such element,
+ * and range views that share the array of this set.
+ *
+ * @see ArraySet
+ */
+public class IntArraySet extends AbstractPrimitiveArraySet<Integer> {
+
+    private final int[] items;
+
+    public IntArraySet() {
+        this(new int[0], 0, 0);
+    }
+
+    /**
+     * @return set of the given values, the array is copied
+     */
+    public static IntArraySet of(@NotNull int... values) {
+        return new IntArraySet(values.clone());
+    }
+
+    /**
+     * @return set of the values of the collection
+     */
+    public static IntArraySet copyOf(@NotNull Collection<? extends Integer> values) {
+        return new IntArraySet(values.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * @param items array owned by the set, sorted in place
+     */
+    private IntArraySet(@NotNull int[] items) {
+        super(0, distinct(items));
+        this.items = items;
+    }
+
+    private IntArraySet(@NotNull int[] items, int from, int to) {
+        super(from, to);
+        this.items = items;
+    }
+
+    /**
+     * Sorts the array and moves distinct elements to its beginning.
+     *
+     * @return number of distinct elements
+     */
+    private static int distinct(int[] items) {
+        Arrays.parallelSort(items);
+        int size = 0;
+        for (int item : items) {
+            if (size == 0 || items[size - 1] != item) {
+                items[size++] = item;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    protected Integer get(int index) {
+        return items[index];
+    }
+
+    @Override
+    protected int search(Integer element) {
+        return search((int) element);
+    }
+
+    private int search(int element) {
+        return Arrays.binarySearch(items, from, to, element);
+    }
+
+    @Override
+    protected IntArraySet view(int from, int to) {
+        return new IntArraySet(items, from, to);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    public boolean contains(int e) {
+        return search(e) >= 0;
+    }
+
+    public int firstInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return items[from];
+    }
+
+    public int lastInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return items[to - 1];
+    }
+
+    /**
+     * Returns the greatest element in this set strictly less than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public int lower(int e, int absent) {
+        int index = lessThan(search(e), false);
+        return index < from ? absent : items[index];
+    }
+
+    /**
+     * Returns the greatest element in this set less than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public int floor(int e, int absent) {
+        int index = lessThan(search(e), true);
+        return index < from ? absent : items[index];
+    }
+
+    /**
+     * Returns the least element in this set greater than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public int ceiling(int e, int absent) {
+        int index = greaterThan(search(e), true);
+        return index < to ? items[index] : absent;
+    }
+
+    /**
+     * Returns the least element in this set strictly greater than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public int higher(int e, int absent) {
+        int index = greaterThan(search(e), false);
+        return index < to ? items[index] : absent;
+    }
+
+    public IntArraySet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        int l = greaterThan(search(fromElement), fromInclusive);
+        int r = lessThan(search(toElement), toInclusive) + 1;
+        return view(l, r < l ? l : r);
+    }
+
+    public IntArraySet headSet(int toElement, boolean inclusive) {
+        return view(from, lessThan(search(toElement), inclusive) + 1);
+    }
+
+    public IntArraySet tailSet(int fromElement, boolean inclusive) {
+        return view(greaterThan(search(fromElement), inclusive), to);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index == to) {
+                    throw new NoSuchElementException();
+                }
+                return items[index++];
+            }
+        };
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOfRange(items, from, to);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += Integer.hashCode(items[i]);
+        }
+        return hash;
+    }
+}
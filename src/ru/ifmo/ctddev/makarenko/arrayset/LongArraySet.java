@@ -0,0 +1,191 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import com.sun.istack.internal.*;
+
+import java.util.*;
+
+/**
+ * Unmodifiable Sorted Set of {@code long} values backed by a sorted {@code long[]}.
+ * <p>
+ * Besides {@link NavigableSet} methods, which box elements, the set provides unboxed
+ * {@link #contains(long)}, navigation with a value returned when there is no such element,
+ * and range views that share the array of this set.
+ *
+ * @see ArraySet
+ */
+public class LongArraySet extends AbstractPrimitiveArraySet<Long> {
+
+    private final long[] items;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0);
+    }
+
+    /**
+     * @return set of the given values, the array is copied
+     */
+    public static LongArraySet of(@NotNull long... values) {
+        return new LongArraySet(values.clone());
+    }
+
+    /**
+     * @return set of the values of the collection
+     */
+    public static LongArraySet copyOf(@NotNull Collection<? extends Long> values) {
+        return new LongArraySet(values.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * @param items array owned by the set, sorted in place
+     */
+    private LongArraySet(@NotNull long[] items) {
+        super(0, distinct(items));
+        this.items = items;
+    }
+
+    private LongArraySet(@NotNull long[] items, int from, int to) {
+        super(from, to);
+        this.items = items;
+    }
+
+    /**
+     * Sorts the array and moves distinct elements to its beginning.
+     *
+     * @return number of distinct elements
+     */
+    private static int distinct(long[] items) {
+        Arrays.parallelSort(items);
+        int size = 0;
+        for (long item : items) {
+            if (size == 0 || items[size - 1] != item) {
+                items[size++] = item;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    protected Long get(int index) {
+        return items[index];
+    }
+
+    @Override
+    protected int search(Long element) {
+        return search((long) element);
+    }
+
+    private int search(long element) {
+        return Arrays.binarySearch(items, from, to, element);
+    }
+
+    @Override
+    protected LongArraySet view(int from, int to) {
+        return new LongArraySet(items, from, to);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains((long) (Long) o);
+    }
+
+    public boolean contains(long e) {
+        return search(e) >= 0;
+    }
+
+    public long firstLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return items[from];
+    }
+
+    public long lastLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return items[to - 1];
+    }
+
+    /**
+     * Returns the greatest element in this set strictly less than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public long lower(long e, long absent) {
+        int index = lessThan(search(e), false);
+        return index < from ? absent : items[index];
+    }
+
+    /**
+     * Returns the greatest element in this set less than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public long floor(long e, long absent) {
+        int index = lessThan(search(e), true);
+        return index < from ? absent : items[index];
+    }
+
+    /**
+     * Returns the least element in this set greater than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public long ceiling(long e, long absent) {
+        int index = greaterThan(search(e), true);
+        return index < to ? items[index] : absent;
+    }
+
+    /**
+     * Returns the least element in this set strictly greater than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public long higher(long e, long absent) {
+        int index = greaterThan(search(e), false);
+        return index < to ? items[index] : absent;
+    }
+
+    public LongArraySet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        int l = greaterThan(search(fromElement), fromInclusive);
+        int r = lessThan(search(toElement), toInclusive) + 1;
+        return view(l, r < l ? l : r);
+    }
+
+    public LongArraySet headSet(long toElement, boolean inclusive) {
+        return view(from, lessThan(search(toElement), inclusive) + 1);
+    }
+
+    public LongArraySet tailSet(long fromElement, boolean inclusive) {
+        return view(greaterThan(search(fromElement), inclusive), to);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index == to) {
+                    throw new NoSuchElementException();
+                }
+                return items[index++];
+            }
+        };
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOfRange(items, from, to);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += Long.hashCode(items[i]);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,255 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import com.sun.istack.internal.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Unmodifiable Sorted Set of {@code long} values searched directly in a memory-mapped file.
+ * <p>
+ * {@link #write} saves a {@link LongArraySet} to a file, and {@link #open} maps it back in constant time:
+ * values are not copied to the heap, and pages are loaded by the operating system on access.
+ * The file is a 16-byte header (magic, key width and number of values) followed by the sorted values,
+ * all little-endian. The mapping is released when the set becomes unreachable.
+ */
+public class MappedLongSet extends AbstractPrimitiveArraySet<Long> {
+
+    private static final int MAGIC = 0x4C534554;
+    private static final int HEADER_SIZE = 16;
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final LongBuffer[] segments;
+
+    private MappedLongSet(@NotNull LongBuffer[] segments, int from, int to) {
+        super(from, to);
+        this.segments = segments;
+    }
+
+    /**
+     * Atomically replaces the file with the values of the set.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(@NotNull LongArraySet set, @NotNull Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(Long.BYTES).putLong(set.size());
+                for (PrimitiveIterator.OfLong i = set.iterator(); i.hasNext(); ) {
+                    if (!buffer.hasRemaining()) {
+                        drain(channel, buffer);
+                    }
+                    buffer.putLong(i.nextLong());
+                }
+                drain(channel, buffer);
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Maps the file written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read or is not a set file
+     */
+    public static MappedLongSet open(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) != -1) {
+                // Read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("'" + file + "' is not a set file");
+            }
+            int width = header.getInt();
+            long size = header.getLong();
+            if (width != Long.BYTES || size < 0 || size > Integer.MAX_VALUE - 8
+                    || channel.size() != HEADER_SIZE + size * Long.BYTES) {
+                throw new IOException("'" + file + "' is corrupted");
+            }
+            LongBuffer[] segments = new LongBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long length = Math.min(SEGMENT_SIZE, size - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start * Long.BYTES,
+                        length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+            return new MappedLongSet(segments, 0, (int) size);
+        }
+    }
+
+    private long value(int index) {
+        return segments[index >>> SEGMENT_SHIFT].get(index & (SEGMENT_SIZE - 1));
+    }
+
+    @Override
+    protected Long get(int index) {
+        return value(index);
+    }
+
+    @Override
+    protected int search(Long element) {
+        return search((long) element);
+    }
+
+    /**
+     * Searches the element in {@code [from, to)} the same way as {@link java.util.Arrays#binarySearch}.
+     */
+    private int search(long element) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long v = value(mid);
+            if (v < element) {
+                low = mid + 1;
+            } else if (v > element) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return ~low;
+    }
+
+    @Override
+    protected MappedLongSet view(int from, int to) {
+        return new MappedLongSet(segments, from, to);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains((long) (Long) o);
+    }
+
+    public boolean contains(long e) {
+        return search(e) >= 0;
+    }
+
+    public long firstLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return value(from);
+    }
+
+    public long lastLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("ArraySet is empty");
+        }
+        return value(to - 1);
+    }
+
+    /**
+     * Returns the greatest element in this set strictly less than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public long lower(long e, long absent) {
+        int index = lessThan(search(e), false);
+        return index < from ? absent : value(index);
+    }
+
+    /**
+     * Returns the greatest element in this set less than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public long floor(long e, long absent) {
+        int index = lessThan(search(e), true);
+        return index < from ? absent : value(index);
+    }
+
+    /**
+     * Returns the least element in this set greater than or equal to
+     * the given element, or {@code absent} if there is no such element.
+     */
+    public long ceiling(long e, long absent) {
+        int index = greaterThan(search(e), true);
+        return index < to ? value(index) : absent;
+    }
+
+    /**
+     * Returns the least element in this set strictly greater than the
+     * given element, or {@code absent} if there is no such element.
+     */
+    public long higher(long e, long absent) {
+        int index = greaterThan(search(e), false);
+        return index < to ? value(index) : absent;
+    }
+
+    public MappedLongSet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        int l = greaterThan(search(fromElement), fromInclusive);
+        int r = lessThan(search(toElement), toInclusive) + 1;
+        return view(l, r < l ? l : r);
+    }
+
+    public MappedLongSet headSet(long toElement, boolean inclusive) {
+        return view(from, lessThan(search(toElement), inclusive) + 1);
+    }
+
+    public MappedLongSet tailSet(long fromElement, boolean inclusive) {
+        return view(greaterThan(search(fromElement), inclusive), to);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index == to) {
+                    throw new NoSuchElementException();
+                }
+                return value(index++);
+            }
+        };
+    }
+
+    public long[] toLongArray() {
+        long[] result = new long[to - from];
+        for (int i = from; i < to; i++) {
+            result[i - from] = value(i);
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += Long.hashCode(value(i));
+        }
+        return hash;
+    }
+}
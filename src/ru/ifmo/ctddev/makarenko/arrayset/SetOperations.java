@@ -0,0 +1,203 @@
+package ru.ifmo.ctddev.makarenko.arrayset;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Set algebra over sorted ranges of arrays without duplicates.
+ * <p>
+ * Ranges of similar sizes are merged linearly. When one range is much smaller, each of its elements
+ * is found in the larger one by galloping (exponential then binary) search, and the skipped parts
+ * of the larger range are copied at once. Large inputs are split at elements of the larger range
+ * into pieces that are merged in parallel.
+ */
+final class SetOperations {
+
+    /**
+     * Size ratio starting from which the smaller range is galloped through the larger one.
+     */
+    private static final int GALLOP_RATIO = 16;
+    /**
+     * Total size starting from which ranges are merged in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    enum Operation {
+        UNION(true, true, true),
+        INTERSECTION(false, false, true),
+        DIFFERENCE(true, false, false),
+        SYMMETRIC_DIFFERENCE(true, true, false);
+
+        final boolean onlyA;
+        final boolean onlyB;
+        final boolean both;
+
+        Operation(boolean onlyA, boolean onlyB, boolean both) {
+            this.onlyA = onlyA;
+            this.onlyB = onlyB;
+            this.both = both;
+        }
+
+        int capacity(int sizeA, int sizeB) {
+            return (onlyA || both ? sizeA : 0) + (onlyB ? sizeB : 0);
+        }
+    }
+
+    /**
+     * A sorted range {@code [from, to)} of an array.
+     */
+    static final class Range {
+        final Object[] items;
+        final int from;
+        final int to;
+
+        Range(Object[] items, int from, int to) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * @return array of the resulting elements in order, for elements present in both ranges
+     * the one from {@code a} is taken
+     */
+    static Object[] apply(Operation op, Range a, Range b, Comparator<Object> order) {
+        if (a.size() + b.size() < PARALLEL_THRESHOLD) {
+            Object[] out = new Object[op.capacity(a.size(), b.size())];
+            return Arrays.copyOf(out, merge(op, a, b, order, out));
+        }
+        boolean aLarger = a.size() >= b.size();
+        Range large = aLarger ? a : b;
+        Range small = aLarger ? b : a;
+        int pieces = Math.min(large.size(), Runtime.getRuntime().availableProcessors() * 4);
+        int[] largeBounds = new int[pieces + 1];
+        int[] smallBounds = new int[pieces + 1];
+        for (int i = 0; i <= pieces; i++) {
+            largeBounds[i] = large.from + (int) ((long) large.size() * i / pieces);
+            smallBounds[i] = i == pieces ? small.to
+                    : lowerBound(small.items, small.from, small.to, large.items[largeBounds[i]], order);
+        }
+        smallBounds[0] = small.from;
+        Object[][] results = IntStream.range(0, pieces).parallel().mapToObj(i -> {
+            Range l = new Range(large.items, largeBounds[i], largeBounds[i + 1]);
+            Range s = new Range(small.items, smallBounds[i], smallBounds[i + 1]);
+            Range pa = aLarger ? l : s;
+            Range pb = aLarger ? s : l;
+            Object[] out = new Object[op.capacity(pa.size(), pb.size())];
+            return Arrays.copyOf(out, merge(op, pa, pb, order, out));
+        }).toArray(Object[][]::new);
+        Object[] out = new Object[Arrays.stream(results).mapToInt(r -> r.length).sum()];
+        int size = 0;
+        for (Object[] result : results) {
+            System.arraycopy(result, 0, out, size, result.length);
+            size += result.length;
+        }
+        return out;
+    }
+
+    /**
+     * Merges the ranges sequentially into {@code out}.
+     *
+     * @return number of elements written
+     */
+    private static int merge(Operation op, Range a, Range b, Comparator<Object> order, Object[] out) {
+        if ((long) a.size() * GALLOP_RATIO < b.size()) {
+            return gallop(a, b, op.onlyA, op.onlyB, op.both, true, order, out);
+        }
+        if ((long) b.size() * GALLOP_RATIO < a.size()) {
+            return gallop(b, a, op.onlyB, op.onlyA, op.both, false, order, out);
+        }
+        int i = a.from;
+        int j = b.from;
+        int size = 0;
+        while (i < a.to && j < b.to) {
+            int c = order.compare(a.items[i], b.items[j]);
+            if (c < 0) {
+                if (op.onlyA) {
+                    out[size++] = a.items[i];
+                }
+                i++;
+            } else if (c > 0) {
+                if (op.onlyB) {
+                    out[size++] = b.items[j];
+                }
+                j++;
+            } else {
+                if (op.both) {
+                    out[size++] = a.items[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        size = copy(a, i, op.onlyA, out, size);
+        return copy(b, j, op.onlyB, out, size);
+    }
+
+    /**
+     * Looks up elements of the {@code small} range in the {@code large} one.
+     *
+     * @param smallIsA whether {@code small} is the first operand, which elements are kept for equal ones
+     */
+    private static int gallop(Range small, Range large, boolean onlySmall, boolean onlyLarge, boolean both,
+                              boolean smallIsA, Comparator<Object> order, Object[] out) {
+        int j = large.from;
+        int size = 0;
+        for (int i = small.from; i < small.to; i++) {
+            Object key = small.items[i];
+            int p = gallop(large.items, j, large.to, key, order);
+            if (onlyLarge) {
+                System.arraycopy(large.items, j, out, size, p - j);
+                size += p - j;
+            }
+            if (p < large.to && order.compare(large.items[p], key) == 0) {
+                if (both) {
+                    out[size++] = smallIsA ? key : large.items[p];
+                }
+                p++;
+            } else if (onlySmall) {
+                out[size++] = key;
+            }
+            j = p;
+        }
+        return copy(large, j, onlyLarge, out, size);
+    }
+
+    private static int copy(Range range, int from, boolean keep, Object[] out, int size) {
+        if (!keep) {
+            return size;
+        }
+        System.arraycopy(range.items, from, out, size, range.to - from);
+        return size + range.to - from;
+    }
+
+    /**
+     * @return index of the least element not less than {@code key} in {@code [from, to)},
+     * found by doubling the step from {@code from}
+     */
+    private static int gallop(Object[] items, int from, int to, Object key, Comparator<Object> order) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < to && order.compare(items[high], key) < 0) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        return lowerBound(items, low, Math.min(high, to), key, order);
+    }
+
+    private static int lowerBound(Object[] items, int from, int to, Object key, Comparator<Object> order) {
+        int index = Arrays.binarySearch(items, from, to, key, order);
+        return index < 0 ? ~index : index;
+    }
+
+    private SetOperations() {
+    }
+}
@@ -0,0 +1,43 @@
+package ru.ifmo.ctddev.makarenko.concurrent;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Checks parts of a list for elements matching a {@link Predicate}, for {@code any} of
+ * {@link info.kgeorgiy.java.advanced.concurrent.ListIP}. The parts checked by one instance
+ * share a flag, so once a match is found in one part, the others stop before their next element.
+ *
+ * @param <T> type of list elements
+ */
+public class AnyMatch<T> implements Function<List<? extends T>, Boolean> {
+
+    private final Predicate<? super T> predicate;
+    private volatile boolean found;
+
+    /**
+     * @param predicate predicate to apply to elements
+     */
+    public AnyMatch(Predicate<? super T> predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * Returns {@code true} if some element of {@code part} matches the predicate
+     * or a match was found in another part, then not all elements may be checked.
+     */
+    @Override
+    public Boolean apply(List<? extends T> part) {
+        for (T element : part) {
+            if (found) {
+                return true;
+            }
+            if (predicate.test(element)) {
+                found = true;
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,6 +3,12 @@ package ru.ifmo.ctddev.makarenko.concurrent;
 import info.kgeorgiy.java.advanced.concurrent.ListIP;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -15,7 +21,48 @@ import static java.lang.Math.min;
  *
  * @author Egor Makarenko
  */
-public class IterativeParallelism implements ListIP {
+public class IterativeParallelism implements ListIP, AutoCloseable {
+
+    private static final int CALIBRATION_ROUNDS = 64;
+    private static final double COST_WEIGHT = 0.25;
+
+    private final ExecutorService executor;
+    /**
+     * Median time of running an empty task in the pool, {@code -1} until measured.
+     */
+    private volatile long handoffNanos = -1;
+    /**
+     * Moving averages of nanoseconds per element over previous calls, by class of the callback
+     * that does the work on each element, so cheap operations do not make expensive ones run inline.
+     */
+    private final ConcurrentMap<Class<?>, Cost> costs = new ConcurrentHashMap<>();
+
+    /**
+     * Moving average of nanoseconds per element, {@code 0} until measured.
+     * Races between callers only lose samples.
+     */
+    private static class Cost {
+        volatile double nanos;
+
+        void measure(long start, int elements) {
+            if (elements > 0) {
+                nanos += COST_WEIGHT * ((double) (System.nanoTime() - start) / elements - nanos);
+            }
+        }
+    }
+
+    /**
+     * Create an instance of {@link IterativeParallelism} with its own pool of daemon threads,
+     * reused between calls. Idle threads stop after a minute. The calling thread processes
+     * one part of each list, and the whole list if it is too small to be worth splitting.
+     */
+    public IterativeParallelism() {
+        this.executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     /**
      * Returns the maximum element of {@link List} according to
@@ -30,11 +77,16 @@ public class IterativeParallelism implements ListIP {
     @Override
     public <T> T maximum(int threads, List<? extends T> list, Comparator<? super T> comparator)
             throws InterruptedException {
+        return maximum(threads, list, comparator, comparator);
+    }
+
+    private <T> T maximum(int threads, List<? extends T> list, Comparator<? super T> comparator, Object callback)
+            throws InterruptedException {
         if (list.isEmpty()) {
             return null;
         }
         Function<List<? extends T>, T> max = l -> Collections.max(l, comparator);
-        return parallelize(threads, list, max, max);
+        return parallelize(threads, list, max, max, callback);
     }
 
     /**
@@ -50,7 +102,7 @@ public class IterativeParallelism implements ListIP {
     @Override
     public <T> T minimum(int threads, List<? extends T> list, Comparator<? super T> comparator)
             throws InterruptedException {
-        return maximum(threads, list, comparator.reversed());
+        return maximum(threads, list, comparator.reversed(), comparator);
     }
 
     /**
@@ -68,7 +120,7 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean all(int threads, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return !any(threads, list, predicate.negate());
+        return !any(threads, list, predicate.negate(), predicate);
     }
 
     /**
@@ -76,6 +128,8 @@ public class IterativeParallelism implements ListIP {
      * May not evaluate the predicate on all elements if not necessary
      * for determining the result. If the {@code list} is empty then
      * {@code false} is returned and the predicate is not evaluated.
+     * <p>
+     * Threads stop checking their parts as soon as one of them finds a match.
      *
      * @param threads   number of threads to use
      * @param list      list to process
@@ -86,9 +140,14 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean any(int threads, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        Function<List<? extends T>, Boolean> match = l -> l.stream().anyMatch(predicate);
+        return any(threads, list, predicate, predicate);
+    }
+
+    private <T> boolean any(int threads, List<? extends T> list, Predicate<? super T> predicate, Object callback)
+            throws InterruptedException {
+        Function<List<? extends T>, Boolean> match = new AnyMatch<>(predicate);
         Function<List<? extends Boolean>, Boolean> matchList = r -> r.stream().anyMatch(y -> y);
-        return parallelize(threads, list, match, matchList);
+        return parallelize(threads, list, match, matchList, callback, r -> !r);
     }
 
     /**
@@ -104,7 +163,7 @@ public class IterativeParallelism implements ListIP {
     public String join(int threads, List<?> list) throws InterruptedException {
         Function<List<?>, String> joinObjects = l -> l.stream().map(Object::toString).collect(Collectors.joining());
         Function<List<? extends String>, String> joinStrings = s -> s.stream().collect(Collectors.joining());
-        return parallelize(threads, list, joinObjects, joinStrings);
+        return parallelize(threads, list, joinObjects, joinStrings, joinObjects);
     }
 
     /**
@@ -121,7 +180,7 @@ public class IterativeParallelism implements ListIP {
     public <T> List<T> filter(int threads, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
         Function<List<? extends T>, List<T>> filter = l -> l.stream().filter(predicate).collect(Collectors.toList());
         Function<List<? extends List<T>>, List<T>> filterLists = l -> l.stream().flatMap(Collection::stream).collect(Collectors.toList());
-        return parallelize(threads, list, filter, filterLists);
+        return parallelize(threads, list, filter, filterLists, predicate);
     }
 
     /**
@@ -138,12 +197,58 @@ public class IterativeParallelism implements ListIP {
     public <T, U> List<U> map(int threads, List<? extends T> list, Function<? super T, ? extends U> function) throws InterruptedException {
         Function<List<? extends T>, List<U>> map = l -> l.stream().map(function).collect(Collectors.toList());
         Function<List<? extends List<U>>, List<U>> mapLists = l -> l.stream().flatMap(Collection::stream).collect(Collectors.toList());
-        return parallelize(threads, list, map, mapLists);
+        return parallelize(threads, list, map, mapLists, function);
+    }
+
+    /**
+     * Returns the number of elements below which lists are processed by the calling thread
+     * in calls with a callback of the same class as {@code callback}: the time of a round trip
+     * to the pool divided by the measured cost of one element, or {@code 0} before anything is measured.
+     */
+    public long getInlineThreshold(Object callback) {
+        Cost cost = costs.get(callback.getClass());
+        return cost != null && cost.nanos > 0 ? (long) (handoffNanos / cost.nanos) : 0;
+    }
+
+    /**
+     * Stops the threads of the pool. The instance must not be used afterwards.
+     * If interrupted while waiting for the threads, returns with the interrupt status set.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private <T, R> R parallelize(int threads, List<? extends T> list,
                                  final Function<List<? extends T>, R> threadJob,
-                                 final Function<List<? extends R>, R> finalJob) throws InterruptedException {
+                                 final Function<List<? extends R>, R> finalJob,
+                                 Object callback) throws InterruptedException {
+        return parallelize(threads, list, threadJob, finalJob, callback, r -> true);
+    }
+
+    /**
+     * @param callback   comparator, predicate or function applied to each element, its class keys the cost
+     * @param exhaustive whether {@code threadJob} has visited every element to get the given result,
+     *                   so its time tells the cost of one
+     */
+    private <T, R> R parallelize(int threads, List<? extends T> list,
+                                 final Function<List<? extends T>, R> threadJob,
+                                 final Function<List<? extends R>, R> finalJob,
+                                 Object callback, Predicate<R> exhaustive) throws InterruptedException {
+        Cost cost = costs.computeIfAbsent(callback.getClass(), c -> new Cost());
+        if (threads <= 1 || list.size() <= 1 || cost.nanos > 0 && list.size() * cost.nanos < handoffNanos()) {
+            long start = System.nanoTime();
+            R result = threadJob.apply(list);
+            if (exhaustive.test(result)) {
+                cost.measure(start, list.size());
+            }
+            return finalJob.apply(Collections.singletonList(result));
+        }
 
         int size = (list.size() + threads - 1) / threads;
         List<List<? extends T>> subLists = new ArrayList<>(threads);
@@ -152,20 +257,77 @@ public class IterativeParallelism implements ListIP {
             subLists.add(list.subList(start, end));
         }
 
-        List<R> result = new ArrayList<>(Collections.nCopies(subLists.size(), null));
-        List<Thread> pool = new ArrayList<>(threads);
-        for (int i = 0; i < subLists.size(); i++) {
+        Object[] results = new Object[subLists.size()];
+        Throwable[] error = new Throwable[1];
+        CountDownLatch latch = new CountDownLatch(subLists.size() - 1);
+        for (int i = 1; i < subLists.size(); i++) {
             final int position = i;
-            Thread t = new Thread(
-                    () -> result.set(position, threadJob.apply(subLists.get(position)))
-            );
-            t.start();
-            pool.add(t);
+            executor.execute(() -> {
+                try {
+                    results[position] = threadJob.apply(subLists.get(position));
+                } catch (Throwable e) {
+                    setError(error, e);
+                } finally {
+                    latch.countDown();
+                }
+            });
         }
-        for (Thread t : pool) {
-            t.join();
+        long start = System.nanoTime();
+        try {
+            R first = threadJob.apply(subLists.get(0));
+            results[0] = first;
+            if (exhaustive.test(first)) {
+                cost.measure(start, subLists.get(0).size());
+            }
+        } catch (Throwable e) {
+            setError(error, e);
         }
+        latch.await();
 
+        synchronized (error) {
+            if (error[0] instanceof Error) {
+                throw (Error) error[0];
+            }
+            if (error[0] != null) {
+                throw (RuntimeException) error[0];
+            }
+        }
+        @SuppressWarnings("unchecked")
+        List<R> result = (List<R>) Arrays.asList(results);
         return finalJob.apply(result);
     }
+
+    /**
+     * Keeps the first failure of the parts, which is rethrown after all of them finish.
+     */
+    private static void setError(Throwable[] error, Throwable e) {
+        synchronized (error) {
+            if (error[0] == null) {
+                error[0] = e;
+            }
+        }
+    }
+
+    /**
+     * Measures the median time of running an empty task in the pool on first use.
+     */
+    private long handoffNanos() throws InterruptedException {
+        if (handoffNanos < 0) {
+            synchronized (executor) {
+                if (handoffNanos < 0) {
+                    long[] samples = new long[CALIBRATION_ROUNDS];
+                    for (int i = 0; i < samples.length; i++) {
+                        CountDownLatch latch = new CountDownLatch(1);
+                        long start = System.nanoTime();
+                        executor.execute(latch::countDown);
+                        latch.await();
+                        samples[i] = System.nanoTime() - start;
+                    }
+                    Arrays.sort(samples);
+                    handoffNanos = samples[samples.length / 2];
+                }
+            }
+        }
+        return handoffNanos;
+    }
 }
@@ -0,0 +1,101 @@
+package ru.ifmo.ctddev.makarenko.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Measures p50 and p99 latency of {@link IterativeParallelism#maximum}, {@link IterativeParallelism#filter}
+ * and {@link IterativeParallelism#any} calls on lists of several sizes. The first element matches in {@code any}.
+ * <p>
+ * For an expensive predicate, compares {@code any} whose first element matches
+ * with {@code all} that has to check every element, as {@code any} did before it stopped early.
+ * <p>
+ * Usage: {@code java IterativeParallelismBenchmark [threads [calls]]},
+ * by default {@code 4} threads and {@code 20000} calls per list size.
+ */
+public class IterativeParallelismBenchmark {
+
+    private static final int[] SIZES = {10, 1000, 100000};
+    private static final int SLOW_SIZE = 1000;
+    private static final int SLOW_ROUNDS = 10000;
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        Predicate<Integer> divisible = x -> x % 3 == 0;
+        try (IterativeParallelism parallelism = new IterativeParallelism()) {
+            for (int size : SIZES) {
+                List<Integer> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(i * 7919 % size);
+                }
+                int count = (int) Math.max(100, Math.min(calls, calls * 1000L / size));
+                long[] maximum = new long[count];
+                long[] filter = new long[count];
+                long[] any = new long[count];
+                for (int i = 0; i < count; i++) {
+                    long start = System.nanoTime();
+                    parallelism.maximum(threads, list, Comparator.naturalOrder());
+                    maximum[i] = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    parallelism.filter(threads, list, divisible);
+                    filter[i] = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    parallelism.any(threads, list, x -> x == 0);
+                    any[i] = System.nanoTime() - start;
+                }
+                print("maximum", size, maximum);
+                print("filter", size, filter);
+                print("any", size, any);
+            }
+            List<Integer> list = new ArrayList<>(SLOW_SIZE);
+            for (int i = 0; i < SLOW_SIZE; i++) {
+                list.add(i);
+            }
+            Predicate<Integer> first = x -> slow(x) == 0;
+            Predicate<Integer> every = x -> slow(x) >= 0;
+            int count = Math.max(20, calls / 200);
+            long[] any = new long[count];
+            long[] all = new long[count];
+            // warm up, otherwise the predicate may be measured before it is fully compiled
+            for (long end = System.nanoTime() + WARMUP_NANOS; System.nanoTime() < end; ) {
+                parallelism.any(threads, list, first);
+                parallelism.all(threads, list, every);
+            }
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                parallelism.any(threads, list, first);
+                any[i] = System.nanoTime() - start;
+                start = System.nanoTime();
+                parallelism.all(threads, list, every);
+                all[i] = System.nanoTime() - start;
+            }
+            print("any-slow", SLOW_SIZE, any);
+            print("all-slow", SLOW_SIZE, all);
+            System.out.printf(Locale.ROOT, "filter inline threshold %d elements%n",
+                    parallelism.getInlineThreshold(divisible));
+        }
+    }
+
+    /**
+     * Returns {@code x} after {@value #SLOW_ROUNDS} rounds of work that cannot be optimized away.
+     */
+    private static int slow(int x) {
+        int hash = x;
+        for (int i = 0; i < SLOW_ROUNDS; i++) {
+            hash = hash * 31 + i;
+        }
+        return hash == x - 1 ? -1 : x;
+    }
+
+    private static void print(String name, int size, long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.printf(Locale.ROOT, "%-8s %7d elements  p50 %9.1f us  p99 %9.1f us%n", name, size,
+                latencies[latencies.length / 2] / 1e3, latencies[latencies.length * 99 / 100] / 1e3);
+    }
+}
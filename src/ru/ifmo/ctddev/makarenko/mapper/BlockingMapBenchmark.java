@@ -0,0 +1,66 @@
+package ru.ifmo.ctddev.makarenko.mapper;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Compares {@link ParallelMapperImpl} with {@link VirtualThreadMapper} on a function that blocks
+ * for a millisecond, and measures the overhead of {@link IterativeParallelism} without a mapper.
+ * <p>
+ * Usage: {@code java BlockingMapBenchmark [threads [size [limit]]]},
+ * by default the number of processors, {@code 2000} elements and a limit of {@code 1000}.
+ */
+public class BlockingMapBenchmark {
+
+    private static final int ROUNDS = 3;
+    private static final int CALLS = 10000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int limit = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        Function<Integer, Integer> blocking = x -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return x;
+        };
+
+        try (ParallelMapperImpl platform = new ParallelMapperImpl(threads);
+             VirtualThreadMapper perTask = new VirtualThreadMapper(limit)) {
+            String name = perTask.isVirtual() ? "virtual" : "cached pool";
+            for (int i = 0; i < ROUNDS; i++) {
+                run("fixed " + threads, platform, blocking, list);
+                run(name + " " + limit, perTask, blocking, list);
+            }
+        }
+
+        IterativeParallelism parallelism = new IterativeParallelism();
+        List<Integer> small = list.subList(0, Math.min(size, 100));
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < CALLS; j++) {
+                parallelism.maximum(threads, small, Comparator.naturalOrder());
+            }
+            System.out.printf(Locale.ROOT, "%-20s %10.1f us/call%n", "maximum", (System.nanoTime() - start) / 1e3 / CALLS);
+        }
+    }
+
+    private static void run(String name, ParallelMapper mapper, Function<Integer, Integer> function,
+                            List<Integer> list) throws InterruptedException {
+        long start = System.nanoTime();
+        mapper.map(function, list);
+        System.out.printf(Locale.ROOT, "%-20s %10.1f ms%n", name, (System.nanoTime() - start) / 1e6);
+    }
+}
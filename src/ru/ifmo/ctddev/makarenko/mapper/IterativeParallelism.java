@@ -2,6 +2,7 @@ package ru.ifmo.ctddev.makarenko.mapper;
 
 import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+import ru.ifmo.ctddev.makarenko.concurrent.AnyMatch;
 
 import java.util.*;
 import java.util.function.Function;
@@ -20,9 +21,17 @@ public class IterativeParallelism implements ListIP {
 
     private final ParallelMapper mapper;
 
+    /**
+     * Mapper for instances created without one, started on first use and never closed.
+     * Each call passes at most {@code threads} sublists, so the mapper itself is not limited.
+     */
+    private static class SharedMapper {
+        static final ParallelMapper INSTANCE = new VirtualThreadMapper(Integer.MAX_VALUE);
+    }
+
     /**
      * Create an instance of {@link IterativeParallelism}
-     * that generates threads for parallel list processing.
+     * that processes lists in virtual threads, see {@link VirtualThreadMapper}.
      */
     public IterativeParallelism() {
         this(null);
@@ -97,6 +106,8 @@ public class IterativeParallelism implements ListIP {
      * May not evaluate the predicate on all elements if not necessary
      * for determining the result. If the {@code list} is empty then
      * {@code false} is returned and the predicate is not evaluated.
+     * <p>
+     * Threads stop checking their parts as soon as one of them finds a match.
      *
      * @param threads   number of threads to use
      * @param list      list to process
@@ -107,7 +118,7 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean any(int threads, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        Function<List<? extends T>, Boolean> match = l -> l.stream().anyMatch(predicate);
+        Function<List<? extends T>, Boolean> match = new AnyMatch<>(predicate);
         Function<List<? extends Boolean>, Boolean> matchList = r -> r.stream().anyMatch(y -> y);
         return parallelize(threads, list, match, matchList);
     }
@@ -173,26 +184,7 @@ public class IterativeParallelism implements ListIP {
             subLists.add(list.subList(start, end));
         }
 
-        List<R> result;
-
-        if (mapper == null) {
-            result = new ArrayList<>(Collections.nCopies(subLists.size(), null));
-            List<Thread> pool = new ArrayList<>(threads);
-            for (int i = 0; i < subLists.size(); i++) {
-                final int position = i;
-                Thread t = new Thread(
-                        () -> result.set(position, threadJob.apply(subLists.get(position)))
-                );
-                t.start();
-                pool.add(t);
-            }
-            for (Thread t : pool) {
-                t.join();
-            }
-        } else {
-            result = mapper.map(threadJob, subLists);
-        }
-
+        List<R> result = (mapper == null ? SharedMapper.INSTANCE : mapper).map(threadJob, subLists);
         return finalJob.apply(result);
     }
 }
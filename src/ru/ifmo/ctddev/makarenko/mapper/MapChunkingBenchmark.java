@@ -0,0 +1,142 @@
+package ru.ifmo.ctddev.makarenko.mapper;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link ParallelMapperImpl#map} with chunked ranges against one task per element,
+ * as {@code ParallelMapperImpl} did before, on cheap and expensive functions.
+ * <p>
+ * Usage: {@code java MapChunkingBenchmark [threads [size]]},
+ * by default the number of processors and {@code 1000000} elements.
+ */
+public class MapChunkingBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        Function<Integer, Integer> cheap = x -> x * 31;
+        Function<Integer, Integer> expensive = x -> {
+            int hash = x;
+            for (int i = 0; i < 1000; i++) {
+                hash = hash * 31 + i;
+            }
+            return hash;
+        };
+
+        try (ParallelMapper perElement = new PerElementMapper(threads);
+             ParallelMapper chunked = new ParallelMapperImpl(threads)) {
+            for (int i = 0; i < ROUNDS; i++) {
+                run("per-element", "cheap", perElement, cheap, list);
+                run("chunked", "cheap", chunked, cheap, list);
+                run("per-element", "expensive", perElement, expensive, list.subList(0, size / 10));
+                run("chunked", "expensive", chunked, expensive, list.subList(0, size / 10));
+            }
+        }
+    }
+
+    private static void run(String name, String function, ParallelMapper mapper, Function<Integer, Integer> f,
+                            List<Integer> list) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Integer> result = mapper.map(f, list);
+        System.out.printf(Locale.ROOT, "%-12s %-10s %10.1f ns/element (%d)%n", name, function,
+                (double) (System.nanoTime() - start) / list.size(), result.get(result.size() - 1));
+    }
+
+    /**
+     * Baseline: every element is a separate task with its own monitor.
+     */
+    private static class PerElementMapper implements ParallelMapper {
+
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private final Thread[] threads;
+
+        PerElementMapper(int threads) {
+            this.threads = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                this.threads[i] = new Thread(() -> {
+                    try {
+                        while (!Thread.interrupted()) {
+                            Runnable task;
+                            synchronized (queue) {
+                                while (queue.isEmpty()) {
+                                    queue.wait();
+                                }
+                                task = queue.poll();
+                            }
+                            task.run();
+                        }
+                    } catch (InterruptedException ignored) {
+                    }
+                });
+                this.threads[i].start();
+            }
+        }
+
+        @Override
+        public <T, R> List<R> map(Function<? super T, ? extends R> function, List<? extends T> list)
+                throws InterruptedException {
+            List<Task<T, R>> tasks = new ArrayList<>(list.size());
+            for (T element : list) {
+                tasks.add(new Task<>(function, element));
+            }
+            synchronized (queue) {
+                queue.addAll(tasks);
+                queue.notifyAll();
+            }
+            for (Task<T, R> task : tasks) {
+                task.waitResult();
+            }
+            return tasks.stream().map(Task::getResult).collect(Collectors.toList());
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    private static class Task<T, R> implements Runnable {
+
+        private final Function<? super T, ? extends R> function;
+        private final T element;
+        private R result;
+        private boolean ready;
+
+        Task(Function<? super T, ? extends R> function, T element) {
+            this.function = function;
+            this.element = element;
+        }
+
+        @Override
+        public synchronized void run() {
+            result = function.apply(element);
+            ready = true;
+            notify();
+        }
+
+        synchronized R getResult() {
+            return result;
+        }
+
+        synchronized void waitResult() throws InterruptedException {
+            while (!ready) {
+                wait();
+            }
+        }
+    }
+}
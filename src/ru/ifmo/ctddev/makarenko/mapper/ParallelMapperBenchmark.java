@@ -0,0 +1,65 @@
+package ru.ifmo.ctddev.makarenko.mapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+/**
+ * Measures throughput of {@link ParallelMapperImpl} schedulers when many threads call
+ * {@link ParallelMapperImpl#map} at the same time with short lists of cheap tasks.
+ * <p>
+ * Usage: {@code java ParallelMapperBenchmark [threads [list size [calls per caller]]]},
+ * by default the number of processors, {@code 64} elements and {@code 200} calls.
+ * Callers are doubled from {@code 1} to {@code 64}.
+ */
+public class ParallelMapperBenchmark {
+
+    private static final int MAX_CALLERS = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int calls = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        List<Integer> list = new ArrayList<>(Collections.nCopies(size, 1));
+        Function<Integer, Integer> function = x -> x + 1;
+
+        for (ParallelMapperImpl.Scheduler scheduler : ParallelMapperImpl.Scheduler.values()) {
+            try (ParallelMapperImpl mapper = new ParallelMapperImpl(threads, scheduler)) {
+                run(mapper, 4, calls, list, function);
+                for (int callers = 1; callers <= MAX_CALLERS; callers *= 2) {
+                    long time = run(mapper, callers, calls, list, function);
+                    System.out.printf(Locale.ROOT, "%-14s %3d callers %12.0f tasks/s%n", scheduler, callers,
+                            (double) callers * calls * size / time * 1e9);
+                }
+            }
+        }
+    }
+
+    private static long run(ParallelMapperImpl mapper, int callers, int calls, List<Integer> list,
+                            Function<Integer, Integer> function) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[callers];
+        for (int i = 0; i < callers; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < calls; j++) {
+                        mapper.map(function, list);
+                    }
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        long time = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - time;
+    }
+}
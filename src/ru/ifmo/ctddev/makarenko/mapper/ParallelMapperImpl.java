@@ -3,8 +3,14 @@ package ru.ifmo.ctddev.makarenko.mapper;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Implementation of {@link ParallelMapper} interface that
@@ -14,42 +20,71 @@ import java.util.stream.Collectors;
  */
 public class ParallelMapperImpl implements ParallelMapper {
 
-    private final Queue<Runnable> queue;
-    private final Thread[] threads;
+    /**
+     * How tasks are distributed between threads.
+     */
+    public enum Scheduler {
+        /**
+         * Single queue guarded by a monitor, simple and fair for a few callers.
+         */
+        SHARED_QUEUE,
+        /**
+         * {@link ForkJoinPool} with a deque per worker: submission does not take a shared lock,
+         * and idle workers steal tasks from busy ones. Scales with many concurrent callers.
+         */
+        WORK_STEALING
+    }
 
+    private static final long TARGET_CHUNK_NANOS = 100_000;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final double COST_WEIGHT = 0.25;
+
+    private final Backend backend;
+    private final int parallelism;
     /**
-     * Creates a new instance of {@link ParallelMapper}.
+     * Moving averages of nanoseconds per element over previous calls, by class of the function,
+     * so a cheap function does not set the range size for an expensive one.
+     */
+    private final ConcurrentMap<Class<?>, Cost> costs = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of {@link ParallelMapper} with {@link Scheduler#SHARED_QUEUE}.
      *
      * @param threads number of threads to use in {@link #map(Function, List)}
+     * @throws IllegalArgumentException if {@code threads} is not positive
      */
     public ParallelMapperImpl(int threads) {
-        this.queue = new ArrayDeque<>();
-        this.threads = new Thread[threads];
-        for (int i = 0; i < threads; i++) {
-            this.threads[i] = new Thread(() -> {
-                try {
-                    while (!Thread.interrupted()) {
-                        Runnable task;
-                        synchronized (queue) {
-                            while (queue.isEmpty()) {
-                                queue.wait();
-                            }
-                            task = queue.poll();
-                        }
-                        task.run();
-                    }
-                } catch (InterruptedException ignored) {
-                } finally {
-                    Thread.currentThread().interrupt();
-                }
-            });
-            this.threads[i].start();
+        this(threads, Scheduler.SHARED_QUEUE);
+    }
+
+    /**
+     * Creates a new instance of {@link ParallelMapper}.
+     *
+     * @param threads   number of threads to use in {@link #map(Function, List)}
+     * @param scheduler how to distribute tasks between threads
+     * @throws IllegalArgumentException if {@code threads} is not positive
+     */
+    public ParallelMapperImpl(int threads, Scheduler scheduler) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be positive, got " + threads);
         }
+        this.parallelism = threads;
+        this.backend = scheduler == Scheduler.WORK_STEALING ? new WorkStealing(threads) : new SharedQueue(threads);
     }
 
     /**
      * Applies {@link Function} to each element of given {@link List}
      * and returns a list of results.
+     * <p>
+     * The list is split into ranges that threads claim one by one. A range takes about
+     * {@value #TARGET_CHUNK_NANOS} ns by the per-element cost measured in previous calls
+     * with a function of the same class, that is, from the same lambda or method reference,
+     * but there are at most {@value #CHUNKS_PER_THREAD} ranges per thread, which bounds
+     * the number of claims in a call. Unless the whole call is estimated to take less than
+     * one range, every thread gets a range, as the estimate may come from a cheaper use
+     * of the same lambda. Lists of at most as many elements as threads are never merged:
+     * their elements are usually parts already chosen by the caller.
+     * If the function throws, the first exception is rethrown and the remaining elements are skipped.
      *
      * @param function function to apply
      * @param list     list of arguments
@@ -60,20 +95,41 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> function, List<? extends T> list) throws InterruptedException {
-        List<Task<T, R>> tasks = new ArrayList<>(list.size());
-        for (T element : list) {
-            tasks.add(new Task<>(function, element));
+        int size = list.size();
+        if (size == 0) {
+            return Collections.emptyList();
         }
-        synchronized (queue) {
-            queue.addAll(tasks);
-            queue.notifyAll();
+        int balanced = (size + parallelism * CHUNKS_PER_THREAD - 1) / (parallelism * CHUNKS_PER_THREAD);
+        Cost cost = costs.computeIfAbsent(function.getClass(), c -> new Cost());
+        int chunk;
+        if (size <= parallelism) {
+            chunk = 1;
+        } else {
+            chunk = (int) Math.min(size, Math.max(balanced, TARGET_CHUNK_NANOS / Math.max(cost.nanos, 1)));
+            if (size * cost.nanos >= TARGET_CHUNK_NANOS) {
+                chunk = Math.min(chunk, (size + parallelism - 1) / parallelism);
+            }
         }
+        int runners = Math.min(parallelism, (size + chunk - 1) / chunk);
+        Batch<T, R> batch = new Batch<>(function, list, chunk, runners);
+        backend.execute(batch, runners);
 
-        for (Task<T, R> task : tasks) {
-            task.waitResult();
+        try {
+            batch.latch.await();
+        } catch (InterruptedException e) {
+            batch.failed = true;
+            throw e;
         }
-
-        return tasks.stream().map(Task::getResult).collect(Collectors.toList());
+        if (batch.error != null) {
+            if (batch.error instanceof Error) {
+                throw (Error) batch.error;
+            }
+            throw (RuntimeException) batch.error;
+        }
+        cost.nanos += COST_WEIGHT * ((double) batch.busy.get() / size - cost.nanos);
+        @SuppressWarnings("unchecked")
+        List<R> result = (List<R>) Arrays.asList(batch.results);
+        return result;
     }
 
     /**
@@ -83,44 +139,151 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public void close() throws InterruptedException {
-        for (Thread thread : threads) {
-            thread.interrupt();
+        backend.close();
+    }
+
+    /**
+     * Threads of a {@link Scheduler}.
+     */
+    private interface Backend {
+        /**
+         * Runs {@code task} on {@code copies} threads at once.
+         */
+        void execute(Runnable task, int copies);
+
+        void close() throws InterruptedException;
+    }
+
+    /**
+     * {@link Scheduler#SHARED_QUEUE}: fixed threads taking tasks from a queue guarded by its monitor.
+     */
+    private static class SharedQueue implements Backend {
+
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private final Thread[] threads;
+
+        SharedQueue(int count) {
+            threads = new Thread[count];
+            for (int i = 0; i < count; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        while (!Thread.interrupted()) {
+                            Runnable task;
+                            synchronized (queue) {
+                                while (queue.isEmpty()) {
+                                    queue.wait();
+                                }
+                                task = queue.poll();
+                            }
+                            task.run();
+                        }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                threads[i].start();
+            }
         }
-        for (Thread thread : threads) {
-            thread.join();
+
+        @Override
+        public void execute(Runnable task, int copies) {
+            synchronized (queue) {
+                for (int i = 0; i < copies; i++) {
+                    queue.add(task);
+                }
+                queue.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
         }
     }
 
-    private class Task<T, R> implements Runnable {
+    /**
+     * {@link Scheduler#WORK_STEALING}: a {@link ForkJoinPool}.
+     */
+    private static class WorkStealing implements Backend {
 
-        private final Function<? super T, ? extends R> function;
-        private final T element;
-        private R result;
-        private boolean ready = false;
+        private final ForkJoinPool pool;
 
-        Task(Function<? super T, ? extends R> function, T element) {
-            this.function = function;
-            this.element = element;
-            this.result = null;
-            this.ready = false;
+        WorkStealing(int count) {
+            pool = new ForkJoinPool(count);
         }
 
         @Override
-        public synchronized void run() {
-            if (!ready) {
-                result = function.apply(element);
-                ready = true;
-                notify();
+        public void execute(Runnable task, int copies) {
+            for (int i = 0; i < copies; i++) {
+                pool.execute(task);
             }
         }
 
-        synchronized R getResult() {
-            return result;
+        @Override
+        public void close() throws InterruptedException {
+            pool.shutdownNow();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Moving average of nanoseconds per element. Races between callers only lose samples.
+     */
+    private static class Cost {
+        volatile double nanos = TARGET_CHUNK_NANOS;
+    }
+
+    /**
+     * Single {@link #map} call. It is queued once per runner, and every run claims
+     * ranges of the list until none are left.
+     */
+    private static class Batch<T, R> implements Runnable {
+
+        private final Function<? super T, ? extends R> function;
+        private final List<? extends T> list;
+        private final Object[] results;
+        private final int chunk;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicLong busy = new AtomicLong();
+        private final CountDownLatch latch;
+        private volatile Throwable error;
+        private volatile boolean failed;
+
+        Batch(Function<? super T, ? extends R> function, List<? extends T> list, int chunk, int runners) {
+            this.function = function;
+            this.list = list;
+            this.results = new Object[list.size()];
+            this.chunk = chunk;
+            this.latch = new CountDownLatch(runners);
         }
 
-        synchronized void waitResult() throws InterruptedException {
-            while (!ready) {
-                wait();
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                int from;
+                while (!failed && (from = next.getAndAdd(chunk)) < results.length) {
+                    int to = Math.min(results.length, from + chunk);
+                    for (int i = from; i < to; i++) {
+                        results[i] = function.apply(list.get(i));
+                    }
+                }
+            } catch (Throwable e) {
+                synchronized (this) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+                failed = true;
+            } finally {
+                busy.addAndGet(System.nanoTime() - start);
+                latch.countDown();
             }
         }
     }
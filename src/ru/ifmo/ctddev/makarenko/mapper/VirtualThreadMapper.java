@@ -0,0 +1,147 @@
+package ru.ifmo.ctddev.makarenko.mapper;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link ParallelMapper} interface that runs every element
+ * in its own thread, for functions that block on I/O.
+ * <p>
+ * Virtual threads are used when the runtime provides them, otherwise threads come from
+ * a cached pool of daemon threads, so neither case creates a platform thread per call.
+ * At most {@code limit} elements are processed at the same time.
+ */
+public class VirtualThreadMapper implements ParallelMapper {
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    /**
+     * Creates a new instance of {@link ParallelMapper}.
+     *
+     * @param limit maximum number of elements processed at the same time
+     */
+    public VirtualThreadMapper(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        ExecutorService executor;
+        boolean virtual;
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtual = true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            executor = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            });
+            virtual = false;
+        }
+        this.executor = executor;
+        this.virtual = virtual;
+        this.permits = new Semaphore(limit);
+    }
+
+    /**
+     * Returns whether elements are processed in virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Applies {@link Function} to each element of given {@link List}
+     * and returns a list of results.
+     * If the function throws, the first exception is rethrown and elements not started yet are skipped.
+     *
+     * @param function function to apply
+     * @param list     list of arguments
+     * @param <T>      type of list elements
+     * @param <R>      type of result
+     * @return new list of results of applying {@code function} to {@code list}
+     * @throws InterruptedException       if the current thread was interrupted while waiting
+     * @throws RejectedExecutionException if this mapper is closed
+     */
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> function, List<? extends T> list) throws InterruptedException {
+        int size = list.size();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        Object[] results = new Object[size];
+        Throwable[] error = new Throwable[1];
+        CountDownLatch latch = new CountDownLatch(size);
+        for (int i = 0; i < size; i++) {
+            permits.acquire();
+            final int index = i;
+            Runnable task = () -> {
+                try {
+                    boolean failed;
+                    synchronized (error) {
+                        failed = error[0] != null;
+                    }
+                    if (!failed) {
+                        results[index] = function.apply(list.get(index));
+                    }
+                } catch (Throwable e) {
+                    synchronized (error) {
+                        if (error[0] == null) {
+                            error[0] = e;
+                        }
+                    }
+                } finally {
+                    permits.release();
+                    latch.countDown();
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                synchronized (error) {
+                    if (error[0] == null) {
+                        error[0] = e;
+                    }
+                }
+                for (int j = i; j < size; j++) {
+                    latch.countDown();
+                }
+                break;
+            }
+        }
+        latch.await();
+
+        if (error[0] != null) {
+            if (error[0] instanceof Error) {
+                throw (Error) error[0];
+            }
+            throw (RuntimeException) error[0];
+        }
+        @SuppressWarnings("unchecked")
+        List<R> result = (List<R>) Arrays.asList(results);
+        return result;
+    }
+
+    /**
+     * Stops accepting elements and waits for running ones.
+     *
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,160 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link HashVisitor} that reads files through {@link AsynchronousFileChannel}.
+ * <p>
+ * Up to {@code inflight} files are read at the same time: the traversal only issues reads,
+ * and each completed read hashes its buffer and issues the next one. Hashes are printed
+ * in the order files were visited, as by {@link ParallelHashVisitor}.
+ */
+public class AsyncHashVisitor extends ParallelHashVisitor {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ExecutorService executor;
+    private final int limit;
+    private final Semaphore inflight;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param writer   writer to print hashes to
+     * @param hasher   hasher to compute hashes with
+     * @param executor executor to complete reads on or {@code null} for the default one
+     * @param inflight maximum number of files being read at the same time
+     * @param merkle   whether to print hashes of directories
+     */
+    public AsyncHashVisitor(Writer writer, FileHasher hasher, ExecutorService executor, int inflight,
+                            boolean merkle) {
+        super(writer, hasher, executor, inflight, merkle);
+        if (inflight < 1) {
+            throw new IllegalArgumentException("Number of reads in flight should be positive, got " + inflight);
+        }
+        this.executor = executor;
+        this.limit = inflight;
+        this.inflight = new Semaphore(inflight);
+    }
+
+    /**
+     * @return number of files being read
+     */
+    public int getInflight() {
+        return limit - inflight.availablePermits();
+    }
+
+    @Override
+    protected CompletableFuture<String> hash(Path file, BasicFileAttributes attrs) {
+        String cached = hasher.getCached(file, attrs);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        try {
+            inflight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(hasher.getDefaultHash());
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        result.whenComplete((hash, e) -> inflight.release());
+        new Read(file, attrs, result).start();
+        return result;
+    }
+
+    /**
+     * Chain of reads of a single file.
+     */
+    private class Read implements CompletionHandler<Integer, Void> {
+        private final Path file;
+        private final BasicFileAttributes attrs;
+        private final CompletableFuture<String> result;
+        private final HashFunction.Hash hash = hasher.getFunction().newHash();
+        private final WalkMetrics metrics = hasher.getMetrics();
+        private AsynchronousFileChannel channel;
+        private ByteBuffer buffer;
+        private long position = 0;
+        private long time;
+
+        Read(Path file, BasicFileAttributes attrs, CompletableFuture<String> result) {
+            this.file = file;
+            this.attrs = attrs;
+            this.result = result;
+        }
+
+        void start() {
+            time = System.nanoTime();
+            try {
+                channel = AsynchronousFileChannel.open(file, Collections.singleton(StandardOpenOption.READ), executor);
+            } catch (IOException e) {
+                result.complete(hasher.failed(file, e));
+                return;
+            } catch (UnsupportedOperationException | SecurityException e) {
+                result.complete(hasher.failed(file, new IOException(e.getMessage(), e)));
+                return;
+            }
+            time = metrics.record(WalkMetrics.Phase.OPEN, time);
+            buffer = buffers.poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+            buffer.clear();
+            channel.read(buffer, position, null, this);
+        }
+
+        @Override
+        public void completed(Integer read, Void attachment) {
+            if (read == -1) {
+                finish(null);
+                return;
+            }
+            try {
+                time = metrics.record(WalkMetrics.Phase.READ, time);
+                metrics.addBytes(read);
+                position += read;
+                buffer.flip();
+                hash.update(buffer);
+                buffer.clear();
+                time = metrics.record(WalkMetrics.Phase.HASH, time);
+                channel.read(buffer, position, null, this);
+            } catch (RuntimeException e) {
+                finish(new IOException(e.getMessage(), e));
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            finish(exc instanceof IOException ? (IOException) exc : new IOException(exc.getMessage(), exc));
+        }
+
+        private void finish(IOException failure) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+            buffers.add(buffer);
+            if (failure == null) {
+                try {
+                    result.complete(hasher.computed(file, attrs, hash.digest()));
+                    return;
+                } catch (RuntimeException e) {
+                    failure = new IOException(e.getMessage(), e);
+                }
+            }
+            result.complete(hasher.failed(file, failure));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link Writer} that encodes and writes text to a {@link FileChannel} on a dedicated thread.
+ * <p>
+ * Text is collected into batches of {@code batchSize} chars. Full batches are passed
+ * through a queue of at most {@code depth} batches, so a slow channel blocks writers
+ * only when the queue is full. Batch buffers are reused.
+ * <p>
+ * After the writing thread fails, later batches are discarded, and the failure is thrown
+ * by the next call to {@code write}, {@code flush} or {@code close}.
+ */
+public class AsyncWriter extends Writer {
+
+    private static final CharBuffer CLOSE = CharBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final BlockingQueue<CharBuffer> queue;
+    private final BlockingQueue<CharBuffer> free;
+    private final Thread thread;
+    private CharBuffer current;
+
+    private final Object progress = new Object();
+    private long submitted = 0;
+    private long written = 0;
+    private volatile IOException failure = null;
+    private boolean closed = false;
+
+    /**
+     * @param channel   channel to write UTF-8 encoded text to, closed with this writer
+     * @param depth     maximum number of batches waiting to be written
+     * @param batchSize number of chars in a batch
+     */
+    public AsyncWriter(FileChannel channel, int depth, int batchSize) {
+        if (depth < 1 || batchSize < 2) {
+            throw new IllegalArgumentException("Invalid queue depth " + depth + " or batch size " + batchSize);
+        }
+        this.channel = channel;
+        this.queue = new ArrayBlockingQueue<>(depth + 1);
+        this.free = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i < depth; i++) {
+            free.add(CharBuffer.allocate(batchSize));
+        }
+        this.current = CharBuffer.allocate(batchSize);
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        ByteBuffer bytes = ByteBuffer.allocateDirect((int) Math.ceil(encoder.maxBytesPerChar() * batchSize));
+        this.thread = new Thread(() -> {
+            try {
+                CharBuffer batch;
+                while ((batch = queue.take()) != CLOSE) {
+                    if (failure == null) {
+                        try {
+                            encode(encoder, batch, bytes);
+                        } catch (IOException e) {
+                            failure = e;
+                        }
+                    }
+                    batch.clear();
+                    free.add(batch);
+                    synchronized (progress) {
+                        written++;
+                        progress.notifyAll();
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }, "AsyncWriter");
+        this.thread.start();
+    }
+
+    private void encode(CharsetEncoder encoder, CharBuffer batch, ByteBuffer buffer) throws IOException {
+        encoder.reset();
+        buffer.clear();
+        CoderResult result = encoder.encode(batch, buffer, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        encoder.flush(buffer);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Passes the current batch to the writing thread. Unless this is the last batch, a trailing
+     * high surrogate is moved to the next batch, so surrogate pairs are never split.
+     */
+    private void submit(boolean last) throws IOException {
+        ensureOpen();
+        CharBuffer next;
+        try {
+            next = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output");
+        }
+        int end = current.position();
+        if (!last && end > 0 && Character.isHighSurrogate(current.get(end - 1))) {
+            next.put(current.get(end - 1));
+            current.position(end - 1);
+        }
+        current.flip();
+        try {
+            queue.put(current);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output");
+        }
+        submitted++;
+        current = next;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            while (len > 0) {
+                int n = Math.min(len, current.remaining());
+                current.put(cbuf, off, n);
+                off += n;
+                len -= n;
+                if (!current.hasRemaining()) {
+                    submit(false);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            while (len > 0) {
+                int n = Math.min(len, current.remaining());
+                current.put(str, off, off + n);
+                off += n;
+                len -= n;
+                if (!current.hasRemaining()) {
+                    submit(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until all text written so far is passed to the channel.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            drain(false);
+        }
+    }
+
+    /**
+     * @param last whether no text follows, so a trailing high surrogate is passed to the encoder,
+     *             which reports it as malformed input instead of dropping it
+     */
+    private void drain(boolean last) throws IOException {
+        ensureOpen();
+        if (current.position() > 0) {
+            submit(last);
+        }
+        synchronized (progress) {
+            while (written < submitted) {
+                try {
+                    progress.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for output");
+                }
+            }
+        }
+        ensureOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                drain(true);
+            } finally {
+                closed = true;
+                queue.add(CLOSE);
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of batches waiting to be written
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,150 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Index of chunk hashes for deduplication reports.
+ * <p>
+ * An open-addressing hash table over parallel primitive arrays:
+ * no objects are allocated per chunk, and a chunk takes 48 to 96 bytes.
+ */
+public class ChunkIndex {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] sizes;
+    private int[] counts;
+    private int[] files;
+    private int[] lastFiles;
+    private int unique = 0;
+
+    private long totalChunks = 0;
+    private long totalBytes = 0;
+    private long uniqueBytes = 0;
+    private int fileCount = 0;
+
+    public ChunkIndex() {
+        allocate(1 << 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        sizes = new int[capacity];
+        counts = new int[capacity];
+        files = new int[capacity];
+        lastFiles = new int[capacity];
+    }
+
+    /**
+     * Hash {@code 0} marks empty slots and is replaced by {@code 1}.
+     */
+    private static long key(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = (int) (key ^ key >>> 32) * 0x9E3779B9 & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Starts a new file. Subsequent chunks are attributed to it.
+     */
+    public void nextFile() {
+        fileCount++;
+    }
+
+    /**
+     * Adds a chunk of the current file.
+     */
+    public void add(long hash, int size) {
+        long key = key(hash);
+        int i = slot(key);
+        totalChunks++;
+        totalBytes += size;
+        if (keys[i] == 0) {
+            keys[i] = key;
+            sizes[i] = size;
+            unique++;
+            uniqueBytes += size;
+        }
+        counts[i]++;
+        if (lastFiles[i] != fileCount) {
+            lastFiles[i] = fileCount;
+            files[i]++;
+        }
+        if (unique > keys.length * LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldSizes = sizes;
+        int[] oldCounts = counts;
+        int[] oldFiles = files;
+        int[] oldLastFiles = lastFiles;
+        allocate(oldKeys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                sizes[i] = oldSizes[j];
+                counts[i] = oldCounts[j];
+                files[i] = oldFiles[j];
+                lastFiles[i] = oldLastFiles[j];
+            }
+        }
+    }
+
+    private long duplicateBytes(int i) {
+        return (long) sizes[i] * (counts[i] - 1);
+    }
+
+    /**
+     * Writes deduplication summary with {@code top} chunks that take most of duplicate space.
+     */
+    public void printSummary(Writer writer, int top) throws IOException {
+        String nl = System.lineSeparator();
+        long shared = 0;
+        PriorityQueue<Integer> largest = new PriorityQueue<>(top + 1,
+                (a, b) -> Long.compare(duplicateBytes(a), duplicateBytes(b)));
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0 || counts[i] < 2) {
+                continue;
+            }
+            if (files[i] > 1) {
+                shared++;
+            }
+            largest.add(i);
+            if (largest.size() > top) {
+                largest.poll();
+            }
+        }
+
+        long duplicate = totalBytes - uniqueBytes;
+        writer.append("Files: ").append(Integer.toString(fileCount)).append(nl);
+        writer.append("Bytes: ").append(Long.toString(totalBytes)).append(nl);
+        writer.append("Duplicate bytes: ").append(Long.toString(duplicate))
+                .append(String.format(" (%.2f%%)", totalBytes == 0 ? 0.0 : 100.0 * duplicate / totalBytes)).append(nl);
+        writer.append("Chunks: ").append(Long.toString(totalChunks))
+                .append(", unique: ").append(Integer.toString(unique)).append(nl);
+        writer.append("Chunks shared between files: ").append(Long.toString(shared)).append(nl);
+        writer.append("Top duplicate chunks (hash, size, occurrences, files, duplicate bytes):").append(nl);
+
+        Integer[] groups = largest.toArray(new Integer[0]);
+        Arrays.sort(groups, (a, b) -> Long.compare(duplicateBytes(b), duplicateBytes(a)));
+        for (int i : groups) {
+            writer.append(String.format("%016x %d %d %d %d", keys[i], sizes[i], counts[i], files[i], duplicateBytes(i)))
+                    .append(nl);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Splits file contents into content-defined chunks using a gear rolling hash:
+ * a chunk ends where the rolling hash of the last bytes has all mask bits cleared,
+ * so equal data produces equal chunks regardless of its offset in the file.
+ */
+public class Chunker {
+
+    /**
+     * Receives chunks in file order.
+     */
+    public interface Consumer {
+        void accept(long hash, int size);
+    }
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5eed);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long mask;
+    private final HashFunction function;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * @param averageSize expected chunk size, power of two
+     * @param function    hash function of chunks, at least 8 bytes long
+     */
+    public Chunker(int averageSize, HashFunction function) {
+        if (Integer.bitCount(averageSize) != 1 || averageSize < 64) {
+            throw new IllegalArgumentException("Average chunk size should be a power of two of at least 64, got " + averageSize);
+        }
+        if (function.getLength() < Long.BYTES) {
+            throw new IllegalArgumentException("Chunk hash should be at least 64 bits long, " + function.getName() + " is not");
+        }
+        this.minSize = averageSize / 4;
+        this.maxSize = averageSize * 8;
+        this.mask = (long) (averageSize - 1) << (Long.SIZE - Integer.numberOfTrailingZeros(averageSize));
+        this.function = function;
+    }
+
+    /**
+     * Splits the file into chunks.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public void chunk(Path file, Consumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            HashFunction.Hash hash = function.newHash();
+            long rolling = 0;
+            int size = 0;
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                int start = buffer.position();
+                for (int i = start; i < buffer.limit(); i++) {
+                    rolling = (rolling << 1) + GEAR[buffer.get(i) & 0xff];
+                    size++;
+                    if (size >= minSize && (rolling & mask) == 0 || size == maxSize) {
+                        update(hash, start, i + 1);
+                        consumer.accept(digest(hash), size);
+                        hash = function.newHash();
+                        rolling = 0;
+                        size = 0;
+                        start = i + 1;
+                    }
+                }
+                update(hash, start, buffer.limit());
+                buffer.clear();
+            }
+            if (size > 0) {
+                consumer.accept(digest(hash), size);
+            }
+        }
+    }
+
+    private void update(HashFunction.Hash hash, int from, int to) {
+        int limit = buffer.limit();
+        buffer.position(from).limit(to);
+        hash.update(buffer);
+        buffer.limit(limit);
+    }
+
+    private static long digest(HashFunction.Hash hash) {
+        return ByteBuffer.wrap(hash.digest()).getLong();
+    }
+}
@@ -0,0 +1,38 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Splits visited files into chunks and adds them to the {@link ChunkIndex}.
+ */
+public class DedupVisitor extends SimpleFileVisitor<Path> {
+
+    private final Chunker chunker;
+    private final ChunkIndex index;
+
+    public DedupVisitor(Chunker chunker, ChunkIndex index) {
+        this.chunker = chunker;
+        this.index = index;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        index.nextFile();
+        try {
+            chunker.chunk(file, index::add);
+        } catch (IOException e) {
+            Utils.reportError(file, e);
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        Utils.reportError(file, exc);
+        return FileVisitResult.CONTINUE;
+    }
+}
@@ -0,0 +1,84 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static ru.ifmo.ctddev.makarenko.walk.Utils.getPath;
+
+/**
+ * Splits all files in the given directories into content-defined chunks
+ * and prints a deduplication summary instead of file hashes.
+ * Files are chunked on the walking thread and read as streams,
+ * {@code -threads} and {@code -mmap} are ignored and {@code -cache} is rejected.
+ * <p>
+ * Options, in addition to {@code -queue} and {@code -batch}:
+ * <ul>
+ * <li>{@code -chunk <bytes>} - average chunk size, power of two, {@value #DEFAULT_CHUNK_SIZE} by default</li>
+ * <li>{@code -hash <name>} - chunk hash function, at least 64 bits long, {@code xxhash64} by default</li>
+ * <li>{@code -top <n>} - number of largest duplicate chunks to print, {@value #DEFAULT_TOP} by default</li>
+ * </ul>
+ */
+public class DedupWalk extends Walk {
+
+    private static final int DEFAULT_CHUNK_SIZE = 8192;
+    private static final int DEFAULT_TOP = 10;
+
+    private final ChunkIndex index = new ChunkIndex();
+    private final DedupVisitor visitor;
+    private final int top;
+
+    protected DedupWalk(Writer writer, Options options) {
+        super(writer, checkOptions(options));
+        HashFunction function = HashFunction.forName(options.get("hash", HashFunctions.XXHASH_64.getName()));
+        visitor = new DedupVisitor(new Chunker(options.getInt("chunk", DEFAULT_CHUNK_SIZE), function), index);
+        top = options.getInt("top", DEFAULT_TOP);
+    }
+
+    private static Options checkOptions(Options options) {
+        if (options.get("cache", null) != null) {
+            throw new IllegalArgumentException("Option -cache is not supported by DedupWalk");
+        }
+        int top = options.getInt("top", DEFAULT_TOP);
+        if (top < 0) {
+            throw new IllegalArgumentException("Number of top chunks should be non-negative, got " + top);
+        }
+        return options;
+    }
+
+    public static void main(String[] args) {
+        run("DedupWalk", args, DedupWalk::new);
+    }
+
+    @Override
+    protected void printHashes(String s) throws IOException {
+        Path path = getPath(s);
+        if (path == null) {
+            System.err.println("Invalid path to file: '" + s + "'");
+            return;
+        }
+        try {
+            Files.walkFileTree(path, visitor);
+        } catch (IOException e) {
+            Utils.reportError(path, e);
+        }
+    }
+
+    @Override
+    protected void printHashes(List<String> batch) throws IOException {
+        for (String s : batch) {
+            printHashes(s);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            index.printSummary(writer, top);
+        } finally {
+            super.close();
+        }
+    }
+}
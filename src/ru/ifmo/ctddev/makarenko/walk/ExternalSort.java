@@ -0,0 +1,171 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Sorted sequence of lines of a walk output file, ordered by path.
+ * <p>
+ * The file is read in runs of at most {@code runSize} lines. Every run is sorted with
+ * {@link Arrays#parallelSort(Object[], Comparator)}, using all cores, and spilled to a
+ * temporary file unless it is the only one. Spilled runs are then merged lazily, so
+ * files larger than memory can be sorted. Runs are read and spilled one after another,
+ * only the sort of a single run is parallel.
+ */
+public class ExternalSort implements Closeable {
+
+    /**
+     * Compares output lines by path, the part after the first space.
+     */
+    public static final Comparator<String> BY_PATH = (a, b) -> {
+        int i = a.indexOf(' ') + 1;
+        int j = b.indexOf(' ') + 1;
+        int n = Math.min(a.length() - i, b.length() - j);
+        for (int k = 0; k < n; k++) {
+            char x = a.charAt(i + k);
+            char y = b.charAt(j + k);
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return (a.length() - i) - (b.length() - j);
+    };
+
+    private static final int READ_BATCH_SIZE = 1024;
+    private static final Comparator<Head> BY_HEAD = (a, b) -> BY_PATH.compare(a.line, b.line);
+
+    private final List<Path> runs = new ArrayList<>();
+    private final List<BufferedReader> readers = new ArrayList<>();
+    private final PriorityQueue<Head> heads = new PriorityQueue<>(BY_HEAD);
+    private String[] memory = null;
+    private int memoryPosition = 0;
+    private int memorySize = 0;
+
+    private static class Head {
+        final String line;
+        final BufferedReader reader;
+
+        Head(String line, BufferedReader reader) {
+            this.line = line;
+            this.reader = reader;
+        }
+    }
+
+    /**
+     * @param input     file to sort
+     * @param runSize   maximum number of lines kept in memory
+     * @param directory directory for temporary files
+     * @throws IOException if some file cannot be read or written
+     */
+    public ExternalSort(Path input, int runSize, Path directory) throws IOException {
+        if (runSize < 1) {
+            throw new IllegalArgumentException("Run size should be positive, got " + runSize);
+        }
+        String[] run = new String[runSize];
+        int size = 0;
+        try (ManifestReader reader = new ManifestReader(input)) {
+            List<String> batch = new ArrayList<>(READ_BATCH_SIZE);
+            while (reader.readBatch(batch, Math.min(READ_BATCH_SIZE, runSize - size))) {
+                for (String line : batch) {
+                    run[size++] = line;
+                }
+                if (size == runSize) {
+                    spill(run, size, directory);
+                    size = 0;
+                }
+            }
+            if (runs.isEmpty()) {
+                Arrays.parallelSort(run, 0, size, BY_PATH);
+                memory = run;
+                memorySize = size;
+            } else {
+                spill(run, size, directory);
+                for (Path path : runs) {
+                    BufferedReader runReader = Files.newBufferedReader(path);
+                    readers.add(runReader);
+                    advance(runReader);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                release();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private void spill(String[] run, int size, Path directory) throws IOException {
+        if (size == 0) {
+            return;
+        }
+        Arrays.parallelSort(run, 0, size, BY_PATH);
+        Path path = Files.createTempFile(directory, "walk", ".run");
+        runs.add(path);
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (int i = 0; i < size; i++) {
+                writer.write(run[i]);
+                writer.newLine();
+                run[i] = null;
+            }
+        }
+    }
+
+    private void advance(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            heads.add(new Head(line, reader));
+        }
+    }
+
+    /**
+     * @return next line in path order or {@code null} if there are no more lines
+     * @throws IOException if a temporary file cannot be read
+     */
+    public String next() throws IOException {
+        if (memory != null) {
+            return memoryPosition < memorySize ? memory[memoryPosition++] : null;
+        }
+        Head head = heads.poll();
+        if (head == null) {
+            return null;
+        }
+        advance(head.reader);
+        return head.line;
+    }
+
+    /**
+     * Deletes temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+        release();
+    }
+
+    private void release() throws IOException {
+        IOException exception = null;
+        for (BufferedReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
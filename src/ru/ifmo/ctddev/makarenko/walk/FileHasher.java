@@ -0,0 +1,138 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Computes hashes of files, reusing hashes from {@link HashCache} when it is given.
+ */
+public class FileHasher implements Closeable {
+
+    private final HashFunction function;
+    private final HashCache cache;
+    private final WalkMetrics metrics;
+
+    /**
+     * @param function hash function to use
+     * @param cache    cache of hashes computed by {@code function} or {@code null} to always read files
+     * @param metrics  metrics to collect
+     */
+    public FileHasher(HashFunction function, HashCache cache, WalkMetrics metrics) {
+        this.function = function;
+        this.cache = cache;
+        this.metrics = metrics;
+    }
+
+    public WalkMetrics getMetrics() {
+        return metrics;
+    }
+
+    public HashFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * @return hash printed for files that cannot be read
+     */
+    public String getDefaultHash() {
+        return function.getDefaultHash();
+    }
+
+    /**
+     * @return hash of the file or {@link #getDefaultHash() default hash} if it cannot be read
+     */
+    public String hash(Path file) {
+        if (cache == null) {
+            return read(file);
+        }
+        BasicFileAttributes attrs;
+        long time = System.nanoTime();
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return failed(file, e);
+        } finally {
+            metrics.record(WalkMetrics.Phase.STAT, time);
+        }
+        return hash(file, attrs);
+    }
+
+    /**
+     * @param attrs attributes of the file, used to check that the cached hash is up to date
+     * @return hash of the file or {@link #getDefaultHash() default hash} if it cannot be read
+     */
+    public String hash(Path file, BasicFileAttributes attrs) {
+        if (cache == null) {
+            return read(file);
+        }
+        String cached = getCached(file, attrs);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return computed(file, attrs, Utils.hashContents(file, function, metrics));
+        } catch (IOException e) {
+            return failed(file, e);
+        }
+    }
+
+    /**
+     * @return cached hash of the file or {@code null} if the file has to be read
+     */
+    String getCached(Path file, BasicFileAttributes attrs) {
+        byte[] cached = cache == null ? null : cache.get(file, attrs);
+        if (cached == null) {
+            return null;
+        }
+        metrics.addFile();
+        return HashFunctions.toHex(cached);
+    }
+
+    /**
+     * Reports that hash of the file has been computed and stores it in the cache, if any.
+     *
+     * @return hash in hex
+     */
+    String computed(Path file, BasicFileAttributes attrs, byte[] hash) {
+        metrics.addFile();
+        if (cache != null) {
+            cache.put(file, attrs, hash);
+        }
+        return HashFunctions.toHex(hash);
+    }
+
+    private String read(Path file) {
+        try {
+            byte[] hash = Utils.hashContents(file, function, metrics);
+            metrics.addFile();
+            return HashFunctions.toHex(hash);
+        } catch (IOException e) {
+            return failed(file, e);
+        }
+    }
+
+    /**
+     * Reports that the file cannot be read.
+     *
+     * @return default hash
+     */
+    String failed(Path file, IOException e) {
+        metrics.addError(e);
+        Utils.reportError(file, e);
+        return getDefaultHash();
+    }
+
+    /**
+     * Saves the cache, if any, and reports its statistics to {@code System.err}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (cache != null) {
+            cache.save();
+            System.err.println("Hash cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+        }
+    }
+}
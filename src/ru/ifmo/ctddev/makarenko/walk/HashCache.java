@@ -0,0 +1,154 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent cache of file hashes computed by a single {@link HashFunction}. A cached hash is reused while the size,
+ * modification time and file key (inode) of the file remain the same.
+ * <p>
+ * Only the files looked up or stored during the current run are saved back,
+ * so hashes of removed files do not accumulate between runs.
+ */
+public class HashCache {
+
+    private static final int MAGIC = 0x57484332;
+
+    private final Path file;
+    private final HashFunction function;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String key;
+        final byte[] hash;
+
+        Entry(long size, long modified, String key, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.key = key;
+            this.hash = hash;
+        }
+
+        Entry(BasicFileAttributes attrs, byte[] hash) {
+            this(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), String.valueOf(attrs.fileKey()), hash);
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                    && modified == attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && key.equals(String.valueOf(attrs.fileKey()));
+        }
+    }
+
+    private HashCache(Path file, HashFunction function, Map<String, Entry> previous) {
+        this.file = file;
+        this.function = function;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the cache from the given file. Missing or corrupted file results in an empty cache.
+     *
+     * Cache of a different hash function is ignored as well.
+     *
+     * @param file     file to load cache from and to save it to
+     * @param function hash function of the cached hashes
+     * @return loaded cache
+     */
+    public static HashCache load(Path file, HashFunction function) {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a hash cache file");
+            }
+            String name = in.readUTF();
+            if (!name.equals(function.getName())) {
+                throw new IOException("hashes are computed by " + name);
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                String key = in.readUTF();
+                byte[] hash = new byte[function.getLength()];
+                in.readFully(hash);
+                entries.put(path, new Entry(size, modified, key, hash));
+            }
+        } catch (NoSuchFileException e) {
+            // First run
+        } catch (IOException e) {
+            System.err.println("Ignoring hash cache '" + file + "': " + e.getMessage());
+            entries.clear();
+        }
+        return new HashCache(file, function, entries);
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().toString();
+    }
+
+    /**
+     * @return cached hash of the file or {@code null} if the file has changed
+     */
+    public byte[] get(Path path, BasicFileAttributes attrs) {
+        String key = key(path);
+        Entry entry = previous.get(key);
+        if (entry == null || !entry.matches(attrs)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        current.put(key, entry);
+        return entry.hash;
+    }
+
+    public void put(Path path, BasicFileAttributes attrs, byte[] hash) {
+        current.put(key(path), new Entry(attrs, hash));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Atomically replaces the cache file with the entries used during this run.
+     *
+     * @throws IOException if the cache cannot be written
+     */
+    public void save() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(function.getName());
+                out.writeInt(current.size());
+                for (Map.Entry<String, Entry> e : current.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    out.writeUTF(entry.key);
+                    out.write(entry.hash);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
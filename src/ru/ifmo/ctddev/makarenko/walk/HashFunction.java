@@ -0,0 +1,73 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.nio.ByteBuffer;
+import java.util.ServiceLoader;
+
+/**
+ * Hash function used to hash file contents.
+ * <p>
+ * Built-in functions are listed in {@link HashFunctions}. Additional functions
+ * may be provided through {@link ServiceLoader} and are selected by their {@link #getName() name}.
+ */
+public interface HashFunction {
+
+    /**
+     * @return name used to select this function on the command line
+     */
+    String getName();
+
+    /**
+     * @return length of the hash value in bytes
+     */
+    int getLength();
+
+    /**
+     * @return new hash computation in its initial state
+     */
+    Hash newHash();
+
+    /**
+     * @return hash printed for files that cannot be read
+     */
+    default String getDefaultHash() {
+        return HashFunctions.toHex(new byte[getLength()]);
+    }
+
+    /**
+     * Single hash computation over a sequence of buffers.
+     */
+    interface Hash {
+
+        /**
+         * Consumes remaining bytes of the buffer.
+         * Position of the buffer is not changed.
+         *
+         * @param buffer data to hash
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * @return hash value of all consumed bytes
+         */
+        byte[] digest();
+    }
+
+    /**
+     * @param name name of the function
+     * @return built-in or service-provided function with the given name
+     * @throws IllegalArgumentException if there is no such function
+     */
+    static HashFunction forName(String name) {
+        for (HashFunction function : HashFunctions.BUILT_IN) {
+            if (function.getName().equals(name)) {
+                return function;
+            }
+        }
+        for (HashFunction function : ServiceLoader.load(HashFunction.class)) {
+            if (function.getName().equals(name)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash function: '" + name + "'");
+    }
+}
@@ -0,0 +1,261 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Built-in {@link HashFunction hash functions}.
+ * <p>
+ * FNV functions use the multiply-then-xor step of the original {@link Walk},
+ * so {@link #FNV_32} gives exactly the same hashes as before. All functions
+ * read input a {@code long} at a time.
+ */
+public final class HashFunctions {
+
+    public static final HashFunction FNV_32 = new SimpleHashFunction("fnv32", 4, Fnv32::new);
+    public static final HashFunction FNV_64 = new SimpleHashFunction("fnv64", 8, Fnv64::new);
+    public static final HashFunction XXHASH_64 = new SimpleHashFunction("xxhash64", 8, XxHash64::new);
+    public static final HashFunction SHA_256 = new SimpleHashFunction("sha256", 32, Sha256::new);
+
+    static final List<HashFunction> BUILT_IN = Arrays.asList(FNV_32, FNV_64, XXHASH_64, SHA_256);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static ByteBuffer ordered(ByteBuffer buffer, ByteOrder order) {
+        return buffer.order() == order ? buffer : buffer.duplicate().order(order);
+    }
+
+    private static class SimpleHashFunction implements HashFunction {
+        private final String name;
+        private final int length;
+        private final Supplier<Hash> factory;
+
+        SimpleHashFunction(String name, int length, Supplier<Hash> factory) {
+            this.name = name;
+            this.length = length;
+            this.factory = factory;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public Hash newHash() {
+            return factory.get();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class Fnv32 implements HashFunction.Hash {
+        private int h = Utils.INITIAL_HASH;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer b = ordered(buffer, ByteOrder.BIG_ENDIAN);
+            final int p = Utils.PRIME_NUMBER;
+            int h = this.h;
+            int i = b.position();
+            for (; i + Long.BYTES <= b.limit(); i += Long.BYTES) {
+                long w = b.getLong(i);
+                h = (h * p) ^ (int) (w >>> 56);
+                h = (h * p) ^ (int) (w >>> 48) & 0xff;
+                h = (h * p) ^ (int) (w >>> 40) & 0xff;
+                h = (h * p) ^ (int) (w >>> 32) & 0xff;
+                h = (h * p) ^ (int) (w >>> 24) & 0xff;
+                h = (h * p) ^ (int) (w >>> 16) & 0xff;
+                h = (h * p) ^ (int) (w >>> 8) & 0xff;
+                h = (h * p) ^ (int) w & 0xff;
+            }
+            for (; i < b.limit(); i++) {
+                h = (h * p) ^ (b.get(i) & 0xff);
+            }
+            this.h = h;
+        }
+
+        @Override
+        public byte[] digest() {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(h).array();
+        }
+    }
+
+    private static class Fnv64 implements HashFunction.Hash {
+        private static final long INITIAL_HASH = 0xcbf29ce484222325L;
+        private static final long PRIME_NUMBER = 0x00000100000001b3L;
+
+        private long h = INITIAL_HASH;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer b = ordered(buffer, ByteOrder.BIG_ENDIAN);
+            final long p = PRIME_NUMBER;
+            long h = this.h;
+            int i = b.position();
+            for (; i + Long.BYTES <= b.limit(); i += Long.BYTES) {
+                long w = b.getLong(i);
+                h = (h * p) ^ (w >>> 56);
+                h = (h * p) ^ (w >>> 48) & 0xff;
+                h = (h * p) ^ (w >>> 40) & 0xff;
+                h = (h * p) ^ (w >>> 32) & 0xff;
+                h = (h * p) ^ (w >>> 24) & 0xff;
+                h = (h * p) ^ (w >>> 16) & 0xff;
+                h = (h * p) ^ (w >>> 8) & 0xff;
+                h = (h * p) ^ w & 0xff;
+            }
+            for (; i < b.limit(); i++) {
+                h = (h * p) ^ (b.get(i) & 0xff);
+            }
+            this.h = h;
+        }
+
+        @Override
+        public byte[] digest() {
+            return ByteBuffer.allocate(Long.BYTES).putLong(h).array();
+        }
+    }
+
+    /**
+     * Streaming XXH64 with zero seed.
+     */
+    private static class XxHash64 implements HashFunction.Hash {
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+        private static final int STRIPE = 32;
+
+        private long v1 = P1 + P2;
+        private long v2 = P2;
+        private long v3 = 0;
+        private long v4 = -P1;
+        private long total = 0;
+        private final ByteBuffer memory = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+
+        private static long round(long acc, long input) {
+            return Long.rotateLeft(acc + input * P2, 31) * P1;
+        }
+
+        private static long mergeRound(long acc, long value) {
+            return (acc ^ round(0, value)) * P1 + P4;
+        }
+
+        private void stripe(ByteBuffer b, int i) {
+            v1 = round(v1, b.getLong(i));
+            v2 = round(v2, b.getLong(i + 8));
+            v3 = round(v3, b.getLong(i + 16));
+            v4 = round(v4, b.getLong(i + 24));
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer b = ordered(buffer, ByteOrder.LITTLE_ENDIAN);
+            int i = b.position();
+            int limit = b.limit();
+            total += limit - i;
+            if (memory.position() > 0) {
+                while (i < limit && memory.hasRemaining()) {
+                    memory.put(b.get(i++));
+                }
+                if (memory.hasRemaining()) {
+                    return;
+                }
+                stripe(memory, 0);
+                memory.clear();
+            }
+            for (; i + STRIPE <= limit; i += STRIPE) {
+                stripe(b, i);
+            }
+            while (i < limit) {
+                memory.put(b.get(i++));
+            }
+        }
+
+        @Override
+        public byte[] digest() {
+            long h;
+            if (total >= STRIPE) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            } else {
+                h = P5;
+            }
+            h += total;
+
+            int i = 0;
+            int end = memory.position();
+            for (; i + Long.BYTES <= end; i += Long.BYTES) {
+                h ^= round(0, memory.getLong(i));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (i + Integer.BYTES <= end) {
+                h ^= (memory.getInt(i) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                i += Integer.BYTES;
+            }
+            for (; i < end; i++) {
+                h ^= (memory.get(i) & 0xff) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            return ByteBuffer.allocate(Long.BYTES).putLong(h).array();
+        }
+    }
+
+    private static class Sha256 implements HashFunction.Hash {
+        private final MessageDigest digest;
+
+        Sha256() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError("SHA-256 is required on every Java platform", e);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            digest.update(buffer.duplicate());
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+
+    private HashFunctions() {
+    }
+}
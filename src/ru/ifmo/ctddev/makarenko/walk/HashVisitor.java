@@ -1,34 +1,139 @@
 package ru.ifmo.ctddev.makarenko.walk;
 
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Prints hashes of visited files.
+ * <p>
+ * In Merkle mode hashes of directories are printed as well, after their contents.
+ * Directory paths end with a {@link File#separator separator}, and a hash of a directory
+ * is computed from the names and hashes of its children, so equal hashes mean equal subtrees.
+ * A directory that cannot be listed completely gets the error hash, like a file that cannot be read.
+ */
 public class HashVisitor extends SimpleFileVisitor<Path> {
 
     private final Writer writer;
+    protected final FileHasher hasher;
+    private final boolean merkle;
+    private final Deque<Directory> directories = new ArrayDeque<>();
 
-    public HashVisitor(Writer writer) {
+    public HashVisitor(Writer writer, FileHasher hasher) {
+        this(writer, hasher, false);
+    }
+
+    /**
+     * @param merkle whether to print hashes of directories
+     */
+    public HashVisitor(Writer writer, FileHasher hasher, boolean merkle) {
         this.writer = writer;
+        this.hasher = hasher;
+        this.merkle = merkle;
+    }
+
+    private static class Directory {
+        final List<String> names = new ArrayList<>();
+        final List<CompletableFuture<String>> hashes = new ArrayList<>();
+    }
+
+    protected void printHash(String file, String hash) throws IOException {
+        long time = System.nanoTime();
+        writer.append(hash).append(' ').append(file).append(System.lineSeparator());
+        hasher.getMetrics().record(WalkMetrics.Phase.OUTPUT, time);
+    }
+
+    protected void printHash(String file, CompletableFuture<String> hash) throws IOException {
+        printHash(file, hash.join());
+    }
+
+    /**
+     * Computes hash of the visited file.
+     */
+    protected CompletableFuture<String> hash(Path file, BasicFileAttributes attrs) {
+        return CompletableFuture.completedFuture(hasher.hash(file, attrs));
+    }
+
+    /**
+     * Writes out all hashes that are not printed yet.
+     */
+    public void flush() throws IOException {
+    }
+
+    private void addChild(Path file, CompletableFuture<String> hash) {
+        Directory parent = directories.peek();
+        if (parent != null) {
+            parent.names.add(file.getFileName().toString());
+            parent.hashes.add(hash);
+        }
+    }
+
+    private void visited(Path file, CompletableFuture<String> hash) throws IOException {
+        addChild(file, hash);
+        printHash(file.toString(), hash);
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        if (merkle) {
+            directories.push(new Directory());
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (!merkle) {
+            return super.postVisitDirectory(dir, exc);
+        }
+        Directory directory = directories.pop();
+        CompletableFuture<String> hash;
+        if (exc == null) {
+            hash = CompletableFuture
+                    .allOf(directory.hashes.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(ignored -> directoryHash(directory));
+        } else {
+            hasher.getMetrics().addError(exc);
+            hash = CompletableFuture.completedFuture(hasher.getDefaultHash());
+        }
+        addChild(dir, hash);
+        String name = dir.toString();
+        printHash(name.endsWith(File.separator) ? name : name + File.separator, hash);
+        return FileVisitResult.CONTINUE;
     }
 
-    private void printHash(Path file, String hash) throws IOException {
-        writer.append(hash).append(' ').append(file.toString()).append(System.lineSeparator());
+    private String directoryHash(Directory directory) {
+        Integer[] order = new Integer[directory.names.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(directory.names::get));
+        HashFunction.Hash hash = hasher.getFunction().newHash();
+        for (int i : order) {
+            String entry = directory.hashes.get(i).join() + ' ' + directory.names.get(i) + '\n';
+            hash.update(ByteBuffer.wrap(entry.getBytes(StandardCharsets.UTF_8)));
+        }
+        return HashFunctions.toHex(hash.digest());
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        printHash(file, Utils.hash(file));
+        visited(file, hash(file, attrs));
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-        printHash(file, Utils.DEFAULT_HASH);
+        hasher.getMetrics().addError(exc);
+        visited(file, CompletableFuture.completedFuture(hasher.getDefaultHash()));
         return FileVisitResult.CONTINUE;
     }
 }
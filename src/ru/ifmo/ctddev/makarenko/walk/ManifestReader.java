@@ -0,0 +1,144 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads lines of a UTF-8 file in batches using fixed-size buffers,
+ * so memory usage does not depend on the size of the file.
+ * <p>
+ * Lines are terminated the same way as in {@link java.io.BufferedReader#readLine()}:
+ * by {@code '\n'}, {@code '\r'} or {@code "\r\n"}.
+ */
+public class ManifestReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder();
+    private boolean skipLineFeed = false;
+    private boolean endOfInput = false;
+    private boolean decoded = false;
+    private long lines = 0;
+
+    /**
+     * @throws IOException if the file cannot be opened
+     */
+    public ManifestReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        chars.flip();
+    }
+
+    /**
+     * Replaces contents of {@code batch} with at most {@code size} next lines.
+     *
+     * @return {@code false} if there are no more lines
+     * @throws IOException if the file cannot be read or is not valid UTF-8
+     */
+    public boolean readBatch(List<String> batch, int size) throws IOException {
+        batch.clear();
+        while (batch.size() < size) {
+            if (!chars.hasRemaining() && !fill()) {
+                if (line.length() > 0) {
+                    batch.add(take());
+                }
+                break;
+            }
+            char[] array = chars.array();
+            int i = chars.position();
+            int limit = chars.limit();
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (array[i] == '\n') {
+                    i++;
+                }
+            }
+            int start = i;
+            while (i < limit && batch.size() < size) {
+                char c = array[i];
+                if (c == '\n' || c == '\r') {
+                    batch.add(take(array, start, i));
+                    i++;
+                    if (c == '\r') {
+                        if (i == limit) {
+                            skipLineFeed = true;
+                        } else if (array[i] == '\n') {
+                            i++;
+                        }
+                    }
+                    start = i;
+                } else {
+                    i++;
+                }
+            }
+            line.append(array, start, i - start);
+            chars.position(i);
+        }
+        lines += batch.size();
+        return !batch.isEmpty();
+    }
+
+    private String take() {
+        String s = line.toString();
+        line.setLength(0);
+        return s;
+    }
+
+    private String take(char[] array, int start, int end) {
+        if (line.length() == 0) {
+            return new String(array, start, end - start);
+        }
+        line.append(array, start, end - start);
+        return take();
+    }
+
+    /**
+     * Decodes the next portion of chars.
+     *
+     * @return {@code false} if the end of file is reached and all chars are consumed
+     */
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !decoded) {
+            if (!endOfInput && channel.read(bytes) == -1) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (endOfInput && result.isUnderflow()) {
+                decoder.flush(chars);
+                decoded = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    /**
+     * @return number of lines read so far
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,63 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional command line arguments of the form {@code -name value}
+ * that follow the input and output files of {@link Walk} and {@link RecursiveWalk}.
+ */
+final class Options {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    /**
+     * Parses options from {@code args} starting at {@code offset}.
+     *
+     * @throws IllegalArgumentException if some option is malformed
+     */
+    Options(String[] args, int offset) {
+        for (int i = offset; i < args.length; i += 2) {
+            if (args[i] == null || !args[i].startsWith("-") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Invalid option: '" + args[i] + "'");
+            }
+            values.put(args[i].substring(1), args[i + 1]);
+        }
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    boolean getBoolean(String name, boolean defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new IllegalArgumentException("Option -" + name + " expects true or false, got '" + value + "'");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    int getInt(String name, int defaultValue) {
+        long value = getLong(name, defaultValue);
+        if (value != (int) value) {
+            throw new IllegalArgumentException("Option -" + name + " expects a number from " + Integer.MIN_VALUE
+                    + " to " + Integer.MAX_VALUE + ", got " + value);
+        }
+        return (int) value;
+    }
+
+    long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option -" + name + " expects a number, got '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link HashVisitor} that hashes files on the given {@link Executor}.
+ * Hashes are printed in the order files were visited, so the output
+ * is the same as the output of the serial visitor. Exceptions of the hashing
+ * threads are rethrown when the hash is printed, as the serial visitor throws them.
+ */
+public class ParallelHashVisitor extends HashVisitor {
+
+    private final Executor executor;
+    private final int window;
+    private final Queue<Pending> pending = new ArrayDeque<>();
+    private volatile int pendingCount = 0;
+
+    /**
+     * @param writer   writer to print hashes to
+     * @param hasher   hasher to compute hashes with
+     * @param executor executor to hash files on
+     * @param window   maximum number of files being hashed at the same time
+     * @param merkle   whether to print hashes of directories
+     */
+    public ParallelHashVisitor(Writer writer, FileHasher hasher, Executor executor, int window, boolean merkle) {
+        super(writer, hasher, merkle);
+        this.executor = executor;
+        this.window = window;
+    }
+
+    private static class Pending {
+        final String file;
+        final CompletableFuture<String> hash;
+
+        Pending(String file, CompletableFuture<String> hash) {
+            this.file = file;
+            this.hash = hash;
+        }
+    }
+
+    @Override
+    protected void printHash(String file, CompletableFuture<String> hash) throws IOException {
+        pending.add(new Pending(file, hash));
+        pendingCount = pending.size();
+        while (pending.size() > window || !pending.isEmpty() && pending.peek().hash.isDone()) {
+            printPending();
+        }
+    }
+
+    private void printPending() throws IOException {
+        Pending p = pending.poll();
+        pendingCount = pending.size();
+        String hash;
+        try {
+            hash = p.hash.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing '" + p.file + "'", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("Cannot hash '" + p.file + "'", e.getCause());
+        }
+        super.printHash(p.file, hash);
+    }
+
+    @Override
+    protected void printHash(String file, String hash) throws IOException {
+        printHash(file, CompletableFuture.completedFuture(hash));
+    }
+
+    /**
+     * @return number of visited files which hashes are not printed yet
+     */
+    public int getPending() {
+        return pendingCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            printPending();
+        }
+    }
+
+    @Override
+    protected CompletableFuture<String> hash(Path file, BasicFileAttributes attrs) {
+        return CompletableFuture.supplyAsync(() -> hasher.hash(file, attrs), executor);
+    }
+}
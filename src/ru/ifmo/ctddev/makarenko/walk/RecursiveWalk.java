@@ -1,72 +1,88 @@
 package ru.ifmo.ctddev.makarenko.walk;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.List;
 
 import static ru.ifmo.ctddev.makarenko.walk.Utils.getPath;
 
+/**
+ * Prints hashes of all files in the given directories.
+ * <p>
+ * Options, in addition to the options of {@link Walk}:
+ * <ul>
+ * <li>{@code -merkle true} - also print hashes of directories, computed from the hashes
+ * of their contents, see {@link HashVisitor}</li>
+ * <li>{@code -backend <name>} - how files are read: {@code sync} (default) reads files on the walking
+ * thread or, with {@code -threads}, on the hashing threads; {@code async} reads them through
+ * {@link AsyncHashVisitor asynchronous channels}</li>
+ * <li>{@code -inflight <n>} - maximum number of files read at the same time by the {@code async} backend,
+ * {@value #DEFAULT_INFLIGHT} by default</li>
+ * </ul>
+ */
 public class RecursiveWalk extends Walk {
 
-    public static void main(String[] args) {
-        if (args.length != 2) {
-            System.err.println("Usage: java Walk <input file> <output file>");
-            return;
-        }
+    private static final int FILES_PER_THREAD = 64;
+    private static final int DEFAULT_INFLIGHT = 64;
 
-        Path inputFile = getPath(args[0]);
-        Path outputFile = getPath(args[1]);
-
-        if (inputFile == null) {
-            System.err.println("Invalid path to input file: '" + args[0] + "'");
-            return;
-        }
+    private final HashVisitor visitor;
 
-        if (outputFile == null) {
-            System.err.println("Invalid path to output file: '" + args[1] + "'");
-            return;
+    protected RecursiveWalk(Writer writer, Options options) {
+        super(writer, options);
+        boolean merkle = options.getBoolean("merkle", false);
+        String backend = options.get("backend", "sync");
+        if (backend.equals("async")) {
+            AsyncHashVisitor async = new AsyncHashVisitor(writer, hasher, executor,
+                    options.getInt("inflight", DEFAULT_INFLIGHT), merkle);
+            metrics.addQueue("pending", async::getPending);
+            metrics.addQueue("inflight", async::getInflight);
+            visitor = async;
+        } else if (!backend.equals("sync")) {
+            throw new IllegalArgumentException("Unknown backend: '" + backend + "'");
+        } else if (executor == null) {
+            visitor = new HashVisitor(writer, hasher, merkle);
+        } else {
+            ParallelHashVisitor parallel = new ParallelHashVisitor(writer, hasher, executor,
+                    threads * FILES_PER_THREAD, merkle);
+            metrics.addQueue("pending", parallel::getPending);
+            visitor = parallel;
         }
+    }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(outputFile)) {
-            try (BufferedReader reader = Files.newBufferedReader(inputFile)) {
-                String s;
-                while ((s = reader.readLine()) != null) {
-                    printHashes(writer, s);
-                }
-            } catch (NoSuchFileException e) {
-                System.err.println("Input file '" + inputFile + "' does not exists");
-            } catch (SecurityException e) {
-                System.err.println("Input file '" + inputFile + "' security violation");
-            } catch (IOException e) {
-                System.err.println("Input error: " + e.getMessage());
-            }
-        } catch (SecurityException e) {
-            System.err.println("Output file '" + outputFile + "' security violation");
-        } catch (IOException e) {
-            System.err.println("Output error: " + e.getMessage());
-        }
+    public static void main(String[] args) {
+        run("RecursiveWalk", args, RecursiveWalk::new);
     }
 
-    protected static void printHashes(Writer writer, String s) throws IOException {
+    @Override
+    protected void printHashes(String s) throws IOException {
         Path path = getPath(s);
         if (path == null) {
             System.err.println("Invalid path to file: '" + s + "'");
-            writer
-                    .append(Utils.DEFAULT_HASH)
-                    .append(' ')
-                    .append(s)
-                    .append(System.lineSeparator());
+            visitor.printHash(s, hasher.getDefaultHash());
             return;
         }
         try {
-            Files.walkFileTree(path, new HashVisitor(writer));
+            Files.walkFileTree(path, visitor);
         } catch (IOException e) {
             System.err.println("Output error: " + e.getMessage());
         }
     }
+
+    @Override
+    protected void printHashes(List<String> batch) throws IOException {
+        for (String s : batch) {
+            printHashes(s);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            visitor.flush();
+        } finally {
+            super.close();
+        }
+    }
 }
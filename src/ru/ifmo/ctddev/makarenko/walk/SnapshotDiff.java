@@ -0,0 +1,160 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static ru.ifmo.ctddev.makarenko.walk.Utils.getPath;
+
+/**
+ * Compares two outputs of {@link Walk} or {@link RecursiveWalk} and prints
+ * <ul>
+ * <li>{@code + <hash> <path>} for added entries,</li>
+ * <li>{@code - <hash> <path>} for removed entries,</li>
+ * <li>{@code * <old hash> <new hash> <path>} for changed entries,</li>
+ * </ul>
+ * ordered by path. Outputs are sorted with {@link ExternalSort}, so they may be larger than memory.
+ * If both outputs contain the same hash of a directory (see {@link HashVisitor}),
+ * the contents of the directory are skipped without comparison. The error hash of zeros
+ * does not describe the contents, so directories that failed in both outputs, as well as
+ * directories listed in the input of {@link Walk}, are compared entry by entry.
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code -lines <n>} - number of lines sorted in memory at once, {@value #DEFAULT_RUN_SIZE} by default</li>
+ * <li>{@code -temp <directory>} - directory for temporary files, the directory of the output file by default</li>
+ * </ul>
+ */
+public class SnapshotDiff {
+
+    private static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+    private final Writer writer;
+    private long added = 0;
+    private long removed = 0;
+    private long changed = 0;
+
+    private SnapshotDiff(Writer writer) {
+        this.writer = writer;
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 3 || args[0] == null || args[1] == null || args[2] == null) {
+            System.err.println("Usage: java SnapshotDiff <old output> <new output> <diff file> [-<option> <value>]...");
+            return;
+        }
+        Path oldFile = getPath(args[0]);
+        Path newFile = getPath(args[1]);
+        Path diffFile = getPath(args[2]);
+        if (oldFile == null || newFile == null || diffFile == null) {
+            System.err.println("Invalid path to file");
+            return;
+        }
+
+        int runSize;
+        Path temp;
+        try {
+            Options options = new Options(args, 3);
+            runSize = options.getInt("lines", DEFAULT_RUN_SIZE);
+            String directory = options.get("temp", null);
+            temp = directory == null ? diffFile.toAbsolutePath().getParent() : getPath(directory);
+            if (temp == null) {
+                throw new IllegalArgumentException("Invalid path to temporary directory: '" + directory + "'");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        try (ExternalSort oldLines = new ExternalSort(oldFile, runSize, temp);
+             ExternalSort newLines = new ExternalSort(newFile, runSize, temp);
+             BufferedWriter writer = Files.newBufferedWriter(diffFile)) {
+            SnapshotDiff diff = new SnapshotDiff(writer);
+            diff.compare(oldLines, newLines);
+            System.err.println("Added: " + diff.added + ", removed: " + diff.removed + ", changed: " + diff.changed);
+        } catch (NoSuchFileException e) {
+            System.err.println("File '" + e.getFile() + "' does not exist");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+        }
+    }
+
+    private static String hash(String line) {
+        int space = line.indexOf(' ');
+        return space < 0 ? "" : line.substring(0, space);
+    }
+
+    private static String path(String line) {
+        return line.substring(line.indexOf(' ') + 1);
+    }
+
+    /**
+     * @return whether the line is a directory hash computed from the whole subtree
+     */
+    private static boolean isSubtree(String hash, String path) {
+        return path.endsWith(File.separator) && !isErrorHash(hash);
+    }
+
+    private static boolean isErrorHash(String hash) {
+        for (int i = 0; i < hash.length(); i++) {
+            if (hash.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return first line after {@code line} that is not inside the directory
+     */
+    private static String skip(ExternalSort lines, String directory) throws IOException {
+        String line;
+        do {
+            line = lines.next();
+        } while (line != null && path(line).startsWith(directory));
+        return line;
+    }
+
+    private void print(char kind, String hashes, String path) throws IOException {
+        writer.append(kind).append(' ').append(hashes).append(' ').append(path).append(System.lineSeparator());
+    }
+
+    private void compare(ExternalSort oldLines, ExternalSort newLines) throws IOException {
+        String a = oldLines.next();
+        String b = newLines.next();
+        while (a != null || b != null) {
+            int cmp = a == null ? 1 : b == null ? -1 : ExternalSort.BY_PATH.compare(a, b);
+            if (cmp < 0) {
+                print('-', hash(a), path(a));
+                removed++;
+                a = oldLines.next();
+            } else if (cmp > 0) {
+                print('+', hash(b), path(b));
+                added++;
+                b = newLines.next();
+            } else {
+                String path = path(a);
+                String oldHash = hash(a);
+                String newHash = hash(b);
+                if (!oldHash.equals(newHash)) {
+                    print('*', oldHash + ' ' + newHash, path);
+                    changed++;
+                    a = oldLines.next();
+                    b = newLines.next();
+                } else if (isSubtree(oldHash, path)) {
+                    a = skip(oldLines, path);
+                    b = skip(newLines, path);
+                } else {
+                    a = oldLines.next();
+                    b = newLines.next();
+                }
+            }
+        }
+    }
+}
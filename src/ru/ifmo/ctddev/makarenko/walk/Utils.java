@@ -1,7 +1,9 @@
 package ru.ifmo.ctddev.makarenko.walk;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 
 public final class Utils {
@@ -11,34 +13,114 @@ public final class Utils {
     public static final int INITIAL_HASH = 0x811c9dc5;
     public static final int PRIME_NUMBER = 0x01000193;
 
+    /**
+     * Files of at least this size are memory-mapped by default
+     */
+    public static final long DEFAULT_MAPPING_THRESHOLD = 1 << 20;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long MAPPING_WINDOW = 1 << 26;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private static volatile long mappingThreshold = DEFAULT_MAPPING_THRESHOLD;
+
+    /**
+     * Collects metrics of {@link #hash(Path, HashFunction)}, which are never reported
+     */
+    private static final WalkMetrics UNREPORTED = new WalkMetrics(null);
+
+    /**
+     * Sets the size starting from which files are memory-mapped instead of being read into a buffer.
+     *
+     * @param threshold file size in bytes
+     */
+    public static void setMappingThreshold(long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Mapping threshold should be non-negative, got " + threshold);
+        }
+        mappingThreshold = threshold;
+    }
+
     public static String hash(Path path) {
+        return hash(path, HashFunctions.FNV_32);
+    }
+
+    public static String hash(Path path, HashFunction function) {
         assert !Files.isDirectory(path);
-        String hash = DEFAULT_HASH;
-        try (BufferedInputStream stream = new BufferedInputStream(Files.newInputStream(path))) {
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            int h = INITIAL_HASH;
-            while ((bytesRead = stream.read(buffer)) != -1) {
-                for (int i = 0; i < bytesRead; i++) {
-                    h = (h * PRIME_NUMBER) ^ (buffer[i] & 0xff);
-                }
-            }
-            hash = String.format("%08x", h);
-        } catch (NoSuchFileException e) {
+        String hash = function.getDefaultHash();
+        try {
+            hash = HashFunctions.toHex(hashContents(path, function, UNREPORTED));
+        } catch (IOException e) {
+            reportError(path, e);
+        }
+        return hash;
+    }
+
+    static void reportError(Path path, IOException e) {
+        if (e instanceof NoSuchFileException) {
             System.err.println("File '" + path + "' not found");
-        } catch (AccessDeniedException e) {
+        } else if (e instanceof AccessDeniedException) {
             System.err.println("File '" + path + "' security violation");
-        } catch (IOException e) {
+        } else {
             System.err.println("I/O error for '" + path + "':" + e.getMessage());
         }
-        return hash;
+    }
+
+    /**
+     * Computes hash of the file contents.
+     * For mapped files the time of page faults is accounted to {@link WalkMetrics.Phase#HASH}.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    static byte[] hashContents(Path path, HashFunction function, WalkMetrics metrics) throws IOException {
+        long time = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            time = metrics.record(WalkMetrics.Phase.OPEN, time);
+            HashFunction.Hash hash = function.newHash();
+            if (size >= mappingThreshold) {
+                hashMapped(channel, size, hash, metrics, time);
+            } else {
+                hashRead(channel, hash, metrics, time);
+            }
+            return hash.digest();
+        }
+    }
+
+    private static void hashRead(FileChannel channel, HashFunction.Hash hash, WalkMetrics metrics, long time)
+            throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            time = metrics.record(WalkMetrics.Phase.READ, time);
+            metrics.addBytes(read);
+            buffer.flip();
+            hash.update(buffer);
+            buffer.clear();
+            time = metrics.record(WalkMetrics.Phase.HASH, time);
+        }
+    }
+
+    private static void hashMapped(FileChannel channel, long size, HashFunction.Hash hash, WalkMetrics metrics,
+                                   long time) throws IOException {
+        for (long position = 0; position < size; position += MAPPING_WINDOW) {
+            long length = Math.min(MAPPING_WINDOW, size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            time = metrics.record(WalkMetrics.Phase.READ, time);
+            hash.update(buffer);
+            metrics.addBytes(length);
+            time = metrics.record(WalkMetrics.Phase.HASH, time);
+        }
     }
 
     public static Path getPath(String s) {
         Path path;
         try {
             path = Paths.get(s);
-        } catch (Exception e) {
+        } catch (InvalidPathException e) {
             path = null;
         }
         return path;
@@ -1,18 +1,92 @@
 package ru.ifmo.ctddev.makarenko.walk;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.BiFunction;
 
 import static ru.ifmo.ctddev.makarenko.walk.Utils.getPath;
 
-public class Walk {
+/**
+ * Prints hashes of the files listed in the input file.
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code -threads <n>} - number of threads hashing files, {@code 1} by default</li>
+ * <li>{@code -mmap <bytes>} - size starting from which files are memory-mapped,
+ * {@value Utils#DEFAULT_MAPPING_THRESHOLD} by default</li>
+ * <li>{@code -hash <name>} - hash function, one of {@code fnv32} (default), {@code fnv64},
+ * {@code xxhash64}, {@code sha256} or a name of a {@link HashFunction} service</li>
+ * <li>{@code -cache <file>} - file to keep hashes of unchanged files between runs</li>
+ * <li>{@code -queue <depth>} - write output on a separate thread through a queue of at most
+ * {@code depth} batches, output is written directly by default</li>
+ * <li>{@code -batch <chars>} - size of output batches for {@code -queue}</li>
+ * <li>{@code -progress <seconds>} - print {@link WalkMetrics progress and metrics} to {@code System.err}
+ * with the given period</li>
+ * <li>{@code -metrics <file>} - save metrics as JSON to the file at the end
+ * and with every progress report</li>
+ * </ul>
+ */
+public class Walk implements Closeable {
+
+    private static final int DEFAULT_BATCH_SIZE = 1 << 16;
+    private static final int INPUT_BATCH_SIZE = 1024;
+
+    protected final Writer writer;
+    protected final FileHasher hasher;
+    protected final WalkMetrics metrics;
+    protected final int threads;
+    protected final ExecutorService executor;
+
+    protected Walk(Writer writer, Options options) {
+        this.writer = writer;
+        threads = options.getInt("threads", 1);
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be positive, got " + threads);
+        }
+        Utils.setMappingThreshold(options.getLong("mmap", Utils.DEFAULT_MAPPING_THRESHOLD));
+        HashFunction function = HashFunction.forName(options.get("hash", HashFunctions.FNV_32.getName()));
+        String cacheFile = options.get("cache", null);
+        String metricsFile = options.get("metrics", null);
+        metrics = new WalkMetrics(metricsFile == null ? null : getOptionPath("metrics", metricsFile));
+        hasher = new FileHasher(function,
+                cacheFile == null ? null : HashCache.load(getOptionPath("cache", cacheFile), function),
+                metrics);
+        executor = threads == 1 ? null : Executors.newFixedThreadPool(threads);
+
+        if (writer instanceof AsyncWriter) {
+            metrics.addQueue("output", ((AsyncWriter) writer)::getQueueDepth);
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            metrics.addQueue("hashing", ((ThreadPoolExecutor) executor).getQueue()::size);
+        }
+        metrics.startReporting(options.getLong("progress", 0));
+    }
+
+    private static Path getOptionPath(String option, String s) {
+        Path path = getPath(s);
+        if (path == null) {
+            throw new IllegalArgumentException("Invalid path for option -" + option + ": '" + s + "'");
+        }
+        return path;
+    }
 
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.err.println("Usage: java Walk <input file> <output file>");
+        run("Walk", args, Walk::new);
+    }
+
+    protected static void run(String name, String[] args, BiFunction<Writer, Options, ? extends Walk> factory) {
+        if (args == null || args.length < 2 || args[0] == null || args[1] == null) {
+            System.err.println("Usage: java " + name + " <input file> <output file> [-<option> <value>]...");
             return;
         }
 
@@ -29,11 +103,20 @@ public class Walk {
             return;
         }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(outputFile)) {
-            try (BufferedReader reader = Files.newBufferedReader(inputFile)) {
-                String s;
-                while ((s = reader.readLine()) != null) {
-                    printHashes(writer, s);
+        Options options;
+        try {
+            options = new Options(args, 2);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        try (Writer writer = newWriter(outputFile, options);
+             Walk walk = factory.apply(writer, options)) {
+            try (ManifestReader reader = new ManifestReader(inputFile)) {
+                List<String> batch = new ArrayList<>(INPUT_BATCH_SIZE);
+                while (reader.readBatch(batch, INPUT_BATCH_SIZE)) {
+                    walk.printHashes(batch);
                 }
             } catch (NoSuchFileException e) {
                 System.err.println("Input file '" + inputFile + "' does not exists");
@@ -42,6 +125,8 @@ public class Walk {
             } catch (IOException e) {
                 System.err.println("Input error: " + e.getMessage());
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
         } catch (SecurityException e) {
             System.err.println("Output file '" + outputFile + "' security violation");
         } catch (IOException e) {
@@ -49,29 +134,106 @@ public class Walk {
         }
     }
 
-    private static String hash(Path path) {
-        return path == null || Files.isDirectory(path) ? Utils.DEFAULT_HASH : Utils.hash(path);
+    private static Writer newWriter(Path file, Options options) throws IOException {
+        int depth = options.getInt("queue", 0);
+        if (depth <= 0) {
+            return Files.newBufferedWriter(file);
+        }
+        int batch = options.getInt("batch", DEFAULT_BATCH_SIZE);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            return new AsyncWriter(channel, depth, batch);
+        } catch (IllegalArgumentException e) {
+            channel.close();
+            throw e;
+        }
     }
 
-    protected static void printHashes(Writer writer, String s) throws IOException {
+    private String hash(String s) {
         Path path = getPath(s);
         if (path == null) {
             System.err.println("Invalid path to file: '" + s + "'");
-            writer
-                    .append(Utils.DEFAULT_HASH)
-                    .append(' ')
-                    .append(s)
-                    .append(System.lineSeparator());
-            return;
+            return hasher.getDefaultHash();
         }
+        long time = System.nanoTime();
+        boolean directory = Files.isDirectory(path);
+        metrics.record(WalkMetrics.Phase.STAT, time);
+        return directory ? hasher.getDefaultHash() : hasher.hash(path);
+    }
+
+    private void printHash(String hash, String s) {
         try {
+            long time = System.nanoTime();
             writer
-                    .append(hash(path))
+                    .append(hash)
                     .append(' ')
                     .append(s)
                     .append(System.lineSeparator());
+            metrics.record(WalkMetrics.Phase.OUTPUT, time);
         } catch (IOException e) {
             System.err.println("Output error: " + e.getMessage());
         }
     }
+
+    protected void printHashes(String s) throws IOException {
+        printHash(hash(s), s);
+    }
+
+    /**
+     * Prints hashes for a batch of input lines, hashing them
+     * in parallel if more than one thread is used.
+     */
+    protected void printHashes(List<String> batch) throws IOException {
+        if (executor == null) {
+            for (String s : batch) {
+                printHashes(s);
+            }
+            return;
+        }
+        List<CompletableFuture<String>> hashes = new ArrayList<>(batch.size());
+        for (String s : batch) {
+            hashes.add(CompletableFuture.supplyAsync(() -> hash(s), executor));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            printHash(join(hashes.get(i)), batch.get(i));
+        }
+    }
+
+    /**
+     * Waits for the hash, rethrowing exceptions of the hashing thread as they are,
+     * so callers can handle them like exceptions of a serial walk.
+     */
+    private static String join(CompletableFuture<String> hash) {
+        try {
+            return hash.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes out all pending results and releases resources held by this walk.
+     * Does not close the output writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        } finally {
+            try {
+                hasher.close();
+            } finally {
+                metrics.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,341 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Benchmarks of the walk tools on synthetic data generated into a temporary directory:
+ * <ul>
+ * <li>{@code hash/<size>} - {@link Utils#hash(Path)} of a single file,</li>
+ * <li>{@code manifest/<lines>} - reading of an input list by {@link ManifestReader},</li>
+ * <li>{@code walk/flat/<variant>} - {@link Walk} on a list of files,</li>
+ * <li>{@code recursive/deep/<variant>} and {@code recursive/wide/<variant>} - {@link RecursiveWalk}
+ * on a deep directory tree of 10 levels with 2 subdirectories each and a wide one
+ * of 2 levels with 64 subdirectories each, files are spread over the leaves,</li>
+ * <li>{@code diff/<lines>} - {@link SnapshotDiff} of two outputs with {@code lines} entries each,
+ * listed in random path order, with every 100th entry changed, removed or added,</li>
+ * </ul>
+ * where variant is {@code serial}, {@code parallel} (one thread per processor) or {@code cached}
+ * (serial with a warm {@link HashCache}). The tools report failures to {@code System.err} and return,
+ * so their outputs are checked after every run, and a benchmark fails if an output is incomplete.
+ * <p>
+ * Usage: {@code java WalkBenchmark <results file> [-<option> <value>]...}, options:
+ * <ul>
+ * <li>{@code -sizes <bytes,...>} - file sizes for {@code hash}, {@value #DEFAULT_SIZES} by default,
+ * add {@code 4294967296} to benchmark a 4 GB file</li>
+ * <li>{@code -files <n>} - number of files in lists and trees, {@value #DEFAULT_FILES} by default</li>
+ * <li>{@code -lines <n>} - number of lines for {@code manifest}, {@value #DEFAULT_LINES} by default</li>
+ * <li>{@code -diff <n>} - number of lines for {@code diff}, {@value #DEFAULT_DIFF_LINES} by default,
+ * use {@code 10000000} to benchmark external sorting and {@code 100000000} for outputs larger than memory</li>
+ * <li>{@code -warmup <n>} and {@code -iterations <n>} - number of warmup and measured iterations</li>
+ * <li>{@code -temp <directory>} - where to generate data, the system temporary directory by default</li>
+ * </ul>
+ * Results are saved as a JSON object with environment information and a list of benchmarks,
+ * one per line, so results of different runs can be compared with a line diff.
+ */
+public class WalkBenchmark {
+
+    private static final String DEFAULT_SIZES = "0,1024,65536,1048576,67108864";
+    private static final int DEFAULT_FILES = 10000;
+    private static final int DEFAULT_LINES = 1000000;
+    private static final long DEFAULT_DIFF_LINES = 1000000;
+    private static final int FILE_SIZE = 4096;
+
+    private final int warmup;
+    private final int iterations;
+    private final List<String> results = new ArrayList<>();
+
+    private WalkBenchmark(int warmup, int iterations) {
+        if (warmup < 0 || iterations < 1) {
+            throw new IllegalArgumentException("Number of warmup iterations should be non-negative and number of "
+                    + "measured iterations positive, got " + warmup + " and " + iterations);
+        }
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    private void measure(String name, long units, String unit, Action action) throws IOException {
+        measure(name, units, unit, action, () -> {});
+    }
+
+    /**
+     * @param check verifies the result of each run of {@code action}, not included in the time
+     */
+    private void measure(String name, long units, String unit, Action action, Action check) throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            action.run();
+            check.run();
+        }
+        long[] times = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            action.run();
+            times[i] = System.nanoTime() - start;
+            check.run();
+        }
+        Arrays.sort(times);
+        double mean = Arrays.stream(times).average().orElse(0) / 1e6;
+        double median = times[times.length / 2] / 1e6;
+        String result = String.format(Locale.ROOT,
+                "{\"benchmark\":\"%s\",\"iterations\":%d,\"meanMillis\":%.3f,\"medianMillis\":%.3f,"
+                        + "\"minMillis\":%.3f,\"maxMillis\":%.3f,\"%sPerSecond\":%.1f}",
+                name, iterations, mean, median, times[0] / 1e6, times[times.length - 1] / 1e6,
+                unit, units / (median / 1e3));
+        System.err.println(result);
+        results.add(result);
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 1 || args[0] == null) {
+            System.err.println("Usage: java WalkBenchmark <results file> [-<option> <value>]...");
+            return;
+        }
+        Path output = Utils.getPath(args[0]);
+        if (output == null) {
+            System.err.println("Invalid path to results file: '" + args[0] + "'");
+            return;
+        }
+        Path temp = null;
+        try {
+            Options options = new Options(args, 1);
+            WalkBenchmark benchmark = new WalkBenchmark(options.getInt("warmup", 2), options.getInt("iterations", 5));
+            String directory = options.get("temp", null);
+            temp = directory == null
+                    ? Files.createTempDirectory("walk-benchmark")
+                    : Files.createTempDirectory(Paths.get(directory), "walk-benchmark");
+
+            for (String size : options.get("sizes", DEFAULT_SIZES).split(",")) {
+                benchmark.hash(temp, Long.parseLong(size.trim()));
+            }
+            benchmark.manifest(temp, options.getInt("lines", DEFAULT_LINES));
+            int files = options.getInt("files", DEFAULT_FILES);
+            benchmark.flat(temp, files);
+            benchmark.recursive(temp, "deep", files, 2, 10);
+            benchmark.recursive(temp, "wide", files, 64, 2);
+            benchmark.diff(temp, options.getLong("diff", DEFAULT_DIFF_LINES));
+            benchmark.save(output);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                delete(temp);
+            }
+        }
+    }
+
+    private void hash(Path temp, long size) throws IOException {
+        Path file = temp.resolve("hash-" + size);
+        generate(file, size, new Random(size));
+        measure("hash/" + size, size, "bytes", () -> Utils.hash(file));
+        Files.delete(file);
+    }
+
+    private void manifest(Path temp, int lines) throws IOException {
+        Path file = temp.resolve("manifest");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < lines; i++) {
+                writer.write("/volume" + i % 7 + "/directory" + i % 1000 + "/file" + i);
+                writer.newLine();
+            }
+        }
+        measure("manifest/" + lines, lines, "lines", () -> {
+            try (ManifestReader reader = new ManifestReader(file)) {
+                List<String> batch = new ArrayList<>();
+                while (reader.readBatch(batch, 1024)) {
+                    batch.clear();
+                }
+            }
+        });
+        Files.delete(file);
+    }
+
+    private void flat(Path temp, int files) throws IOException {
+        Path root = Files.createDirectory(temp.resolve("flat"));
+        Path input = temp.resolve("flat.txt");
+        Random random = new Random(files);
+        try (BufferedWriter writer = Files.newBufferedWriter(input)) {
+            for (int i = 0; i < files; i++) {
+                Path file = root.resolve("file" + i);
+                generate(file, random.nextInt(2 * FILE_SIZE), random);
+                writer.write(file.toString());
+                writer.newLine();
+            }
+        }
+        variants("walk/flat", files, temp, input, Walk::main);
+    }
+
+    private void recursive(Path temp, String name, int files, int width, int depth) throws IOException {
+        Path root = Files.createDirectory(temp.resolve(name));
+        Random random = new Random(files);
+        List<Path> leaves = new ArrayList<>();
+        tree(root, width, depth, leaves);
+        for (int i = 0; i < files; i++) {
+            generate(leaves.get(i % leaves.size()).resolve("file" + i), random.nextInt(2 * FILE_SIZE), random);
+        }
+        Path input = temp.resolve(name + ".txt");
+        Files.write(input, Collections.singletonList(root.toString()));
+        variants("recursive/" + name, files, temp, input, RecursiveWalk::main);
+    }
+
+    private void diff(Path temp, long lines) throws IOException {
+        Path oldFile = temp.resolve("old.txt");
+        Path newFile = temp.resolve("new.txt");
+        long differences = 0;
+        try (BufferedWriter oldWriter = Files.newBufferedWriter(oldFile);
+             BufferedWriter newWriter = Files.newBufferedWriter(newFile)) {
+            for (long i = 0; i < lines; i++) {
+                long key = mix(i);
+                String path = " /volume" + i % 7 + "/directory" + Long.toHexString(key >>> 52) + "/file" + Long.toHexString(key);
+                String hash = String.format("%016x", mix(key));
+                oldWriter.write(hash + path);
+                oldWriter.newLine();
+                if (i % 100 < 3) {
+                    differences++;
+                }
+                switch ((int) (i % 100)) {
+                    case 0:
+                        newWriter.write(String.format("%016x", ~mix(key)) + path);
+                        break;
+                    case 1:
+                        continue;
+                    case 2:
+                        newWriter.write(hash + path + ".new");
+                        newWriter.newLine();
+                        newWriter.write(hash + path);
+                        break;
+                    default:
+                        newWriter.write(hash + path);
+                }
+                newWriter.newLine();
+            }
+        }
+        Path diff = temp.resolve("diff.txt");
+        long expected = differences;
+        measure("diff/" + lines, 2 * lines, "lines",
+                () -> SnapshotDiff.main(new String[]{oldFile.toString(), newFile.toString(), diff.toString(),
+                        "-temp", temp.toString()}),
+                () -> checkOutput(diff, expected));
+        Files.delete(oldFile);
+        Files.delete(newFile);
+    }
+
+    /**
+     * Bijective mix of a counter, so consecutive lines get unrelated paths.
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    private interface Tool {
+        void main(String[] args);
+    }
+
+    private void variants(String name, int files, Path temp, Path input, Tool tool) throws IOException {
+        String in = input.toString();
+        Path output = temp.resolve("output.txt");
+        String out = output.toString();
+        String cache = temp.resolve("cache.bin").toString();
+        String threads = Integer.toString(Runtime.getRuntime().availableProcessors());
+        Action check = () -> checkOutput(output, files);
+        measure(name + "/serial", files, "files", () -> tool.main(new String[]{in, out}), check);
+        measure(name + "/parallel", files, "files", () -> tool.main(new String[]{in, out, "-threads", threads}), check);
+        tool.main(new String[]{in, out, "-cache", cache});
+        check.run();
+        measure(name + "/cached", files, "files", () -> tool.main(new String[]{in, out, "-cache", cache}), check);
+    }
+
+    /**
+     * Checks that the output has the expected number of lines and no default hashes
+     * of files that could not be read, then deletes it, so a failed run cannot reuse it.
+     */
+    private static void checkOutput(Path output, long lines) throws IOException {
+        if (Files.notExists(output)) {
+            throw new IOException("Output '" + output + "' was not written");
+        }
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(output)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(HashFunctions.FNV_32.getDefaultHash() + ' ')) {
+                    throw new IOException("Output '" + output + "' has an error hash: '" + line + "'");
+                }
+                count++;
+            }
+        }
+        if (count != lines) {
+            throw new IOException("Output '" + output + "' has " + count + " lines, expected " + lines);
+        }
+        Files.delete(output);
+    }
+
+    private static void tree(Path directory, int width, int depth, List<Path> leaves) throws IOException {
+        if (depth == 0) {
+            leaves.add(directory);
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            tree(Files.createDirectory(directory.resolve("d" + i)), width, depth - 1, leaves);
+        }
+    }
+
+    private static void generate(Path file, long size, Random random) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += buffer.length) {
+                random.nextBytes(buffer);
+                out.write(buffer, 0, (int) Math.min(buffer.length, size - written));
+            }
+        }
+    }
+
+    private void save(Path output) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output)) {
+            writer.write(String.format(Locale.ROOT, "{\"timestamp\":\"%s\",\"java\":\"%s\",\"processors\":%d,",
+                    Instant.now(), System.getProperty("java.version"), Runtime.getRuntime().availableProcessors()));
+            writer.newLine();
+            writer.write("\"results\":[");
+            writer.newLine();
+            for (int i = 0; i < results.size(); i++) {
+                writer.write(results.get(i));
+                writer.write(i + 1 < results.size() ? "," : "");
+                writer.newLine();
+            }
+            writer.write("]}");
+            writer.newLine();
+        }
+    }
+
+    private static void delete(Path directory) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Cannot delete '" + directory + "': " + e.getMessage());
+        }
+    }
+}
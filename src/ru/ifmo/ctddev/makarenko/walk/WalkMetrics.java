@@ -0,0 +1,227 @@
+package ru.ifmo.ctddev.makarenko.walk;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Progress and performance counters of a walk: processed files and bytes,
+ * latency histograms of I/O and hashing phases, errors by exception type and queue depths.
+ * <p>
+ * Counters may be updated from any thread. A snapshot can be printed to {@code System.err}
+ * periodically and saved as JSON.
+ */
+public class WalkMetrics implements Closeable {
+
+    /**
+     * Instrumented phases of processing a file.
+     */
+    public enum Phase {
+        STAT, OPEN, READ, HASH, OUTPUT
+    }
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentSkipListMap<>();
+    private final Map<String, IntSupplier> queues = new ConcurrentSkipListMap<>();
+    private final Path snapshot;
+    private ScheduledExecutorService reporter = null;
+
+    /**
+     * @param snapshot file to save JSON snapshots to or {@code null}
+     */
+    public WalkMetrics(Path snapshot) {
+        this.snapshot = snapshot;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Latency histogram with power-of-two nanosecond buckets.
+     */
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+
+        void add(long nanos) {
+            buckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+            count.increment();
+            total.add(nanos);
+        }
+
+        /**
+         * @return upper bound of the bucket containing the given quantile
+         */
+        long quantile(double q) {
+            long target = (long) Math.ceil(count.sum() * q);
+            long seen = 0;
+            for (int i = 0; i < Long.SIZE; i++) {
+                seen += buckets.get(i);
+                if (seen >= target && seen > 0) {
+                    return i == Long.SIZE - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+                }
+            }
+            return 0;
+        }
+
+        void toJson(StringBuilder sb) {
+            long n = count.sum();
+            sb.append("{\"count\":").append(n)
+                    .append(",\"meanNanos\":").append(n == 0 ? 0 : total.sum() / n)
+                    .append(",\"p50Nanos\":").append(quantile(0.5))
+                    .append(",\"p99Nanos\":").append(quantile(0.99))
+                    .append('}');
+        }
+    }
+
+    /**
+     * Records duration of a phase started at {@code startNanos}.
+     *
+     * @return current {@link System#nanoTime()}, to be used as the start of the next phase
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        phases[phase.ordinal()].add(now - startNanos);
+        return now;
+    }
+
+    public void addFile() {
+        files.increment();
+    }
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    public void addError(IOException e) {
+        errors.computeIfAbsent(e.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Registers a queue which depth is reported.
+     */
+    public void addQueue(String name, IntSupplier depth) {
+        queues.put(name, depth);
+    }
+
+    /**
+     * Starts printing progress to {@code System.err} and saving snapshots every {@code seconds}.
+     */
+    public synchronized void startReporting(long seconds) {
+        if (reporter != null || seconds <= 0) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "WalkMetrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    private void report() {
+        System.err.println(toString());
+        try {
+            save();
+        } catch (IOException e) {
+            System.err.println("Cannot save metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Atomically replaces the snapshot file, if any, with the current state.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (snapshot == null) {
+            return;
+        }
+        Path directory = snapshot.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+                writer.write(toJson());
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private double seconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    public String toJson() {
+        double seconds = seconds();
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"seconds\":").append(String.format(Locale.ROOT, "%.3f", seconds))
+                .append(",\"files\":").append(files.sum())
+                .append(",\"bytes\":").append(bytes.sum())
+                .append(",\"filesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", files.sum() / seconds))
+                .append(",\"bytesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", bytes.sum() / seconds))
+                .append(",\"phases\":{");
+        for (Phase phase : Phase.values()) {
+            sb.append(phase.ordinal() == 0 ? "" : ",").append('"').append(phase.name().toLowerCase()).append("\":");
+            phases[phase.ordinal()].toJson(sb);
+        }
+        sb.append("},\"errors\":{");
+        String separator = "";
+        for (Map.Entry<String, LongAdder> e : errors.entrySet()) {
+            sb.append(separator).append('"').append(e.getKey()).append("\":").append(e.getValue().sum());
+            separator = ",";
+        }
+        sb.append("},\"queues\":{");
+        separator = "";
+        for (Map.Entry<String, IntSupplier> e : queues.entrySet()) {
+            sb.append(separator).append('"').append(e.getKey()).append("\":").append(e.getValue().getAsInt());
+            separator = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    @Override
+    public String toString() {
+        double seconds = seconds();
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "[%.0fs] %d files (%.1f/s), %.1f MB (%.1f MB/s)",
+                seconds, files.sum(), files.sum() / seconds, bytes.sum() / 1e6, bytes.sum() / 1e6 / seconds));
+        for (Phase phase : Phase.values()) {
+            Histogram h = phases[phase.ordinal()];
+            sb.append(String.format(Locale.ROOT, ", %s p50/p99 %d/%d us", phase.name().toLowerCase(),
+                    h.quantile(0.5) / 1000, h.quantile(0.99) / 1000));
+        }
+        for (Map.Entry<String, LongAdder> e : errors.entrySet()) {
+            sb.append(", ").append(e.getKey()).append(' ').append(e.getValue().sum());
+        }
+        for (Map.Entry<String, IntSupplier> e : queues.entrySet()) {
+            sb.append(", ").append(e.getKey()).append(" queue ").append(e.getValue().getAsInt());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stops reporting and saves the final snapshot.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            System.err.println(toString());
+        }
+        save();
+    }
+}